@@ -0,0 +1,54 @@
+package com.cavetale.auction.benchmark;
+
+import com.cavetale.auction.BidRules;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The decision part of Auction.bidCommand, over a mix of accepted
+ * and rejected bids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidRulesBenchmark {
+    private static final int BIDS = 1024;
+    private final double[] prices = new double[BIDS];
+    private final double[] highests = new double[BIDS];
+    private final boolean[] hasWinners = new boolean[BIDS];
+    private final boolean[] wasWinners = new boolean[BIDS];
+    private final double[] amounts = new double[BIDS];
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1L);
+        for (int i = 0; i < BIDS; i += 1) {
+            prices[i] = 100.0 + random.nextInt(1000);
+            hasWinners[i] = random.nextInt(4) != 0;
+            highests[i] = hasWinners[i] ? prices[i] + random.nextInt(200) : prices[i];
+            wasWinners[i] = hasWinners[i] && random.nextInt(8) == 0;
+            amounts[i] = prices[i] + random.nextInt(400) - 100;
+        }
+    }
+
+    @Benchmark
+    public void judge(Blackhole blackhole) {
+        for (int i = 0; i < BIDS; i += 1) {
+            blackhole.consume(BidRules.judge(prices[i], highests[i], hasWinners[i], wasWinners[i], amounts[i]));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cavetale.auction.benchmark;
+
+import com.cavetale.auction.Format;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Format.duration, which the sidebar, the info lines and every
+ * announcement render once per viewer.  With a constant duration,
+ * nearly every call is served from the duration cache.  The uncached
+ * variants add an offset which cycles through more durations than
+ * the cache holds, so every call renders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    @Param({"30", "3600", "90061"})
+    public long seconds;
+    private long offset;
+
+    @Benchmark
+    public Component duration() {
+        return Format.duration(Duration.ofSeconds(seconds));
+    }
+
+    @Benchmark
+    public Component durationDark() {
+        return Format.duration(Duration.ofSeconds(seconds), true);
+    }
+
+    @Benchmark
+    public Component durationUncached() {
+        offset = (offset + 1L) & 4095L;
+        return Format.duration(Duration.ofSeconds(seconds + offset));
+    }
+
+    @Benchmark
+    public Component durationDarkUncached() {
+        offset = (offset + 1L) & 4095L;
+        return Format.duration(Duration.ofSeconds(seconds + offset), true);
+    }
+}
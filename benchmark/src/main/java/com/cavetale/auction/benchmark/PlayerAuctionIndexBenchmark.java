@@ -0,0 +1,92 @@
+package com.cavetale.auction.benchmark;
+
+import com.cavetale.auction.ListenType;
+import com.cavetale.auction.PlayerAuctionIndex;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The lookups behind Auctions.getPlayerAuctions and
+ * getFocusAuctions, at N auctions times M players.  Each player
+ * touched a random tenth of the auctions.  Auction objects need the
+ * plugin, so the index methods are given the auction ids in their
+ * place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerAuctionIndexBenchmark {
+    @Param({"10", "100"})
+    public int auctions;
+
+    @Param({"100", "1000"})
+    public int players;
+
+    private final PlayerAuctionIndex index = new PlayerAuctionIndex();
+    private final List<Integer> sortedAuctionIds = new ArrayList<>();
+    private UUID[] uuids;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1L);
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i += 1) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        for (int id = 1; id <= auctions; id += 1) {
+            sortedAuctionIds.add(id);
+            for (UUID uuid : uuids) {
+                if (random.nextInt(10) != 0) continue;
+                SQLPlayerAuction row = new SQLPlayerAuction(id, uuid);
+                row.setListenType(ListenType.values()[random.nextInt(ListenType.values().length)]);
+                index.put(row);
+            }
+        }
+    }
+
+    private UUID nextPlayer() {
+        next = (next + 1) % uuids.length;
+        return uuids[next];
+    }
+
+    /**
+     * The ordering behind Auctions.getPlayerAuctions.
+     */
+    @Benchmark
+    public List<Integer> sortForPlayer() {
+        return index.sortForPlayer(nextPlayer(), sortedAuctionIds, Integer::intValue);
+    }
+
+    /**
+     * The lookup behind Auctions.getFocusAuctions, which runs when a
+     * player's focus index entry was invalidated.
+     */
+    @Benchmark
+    public List<Integer> getFocused() {
+        return index.getFocused(nextPlayer(), id -> id <= auctions ? id : null);
+    }
+
+    @Benchmark
+    public ListenType getListenType() {
+        return index.getListenType(nextPlayer(), 1 + next % auctions);
+    }
+}
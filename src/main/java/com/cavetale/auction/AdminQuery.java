@@ -0,0 +1,157 @@
+package com.cavetale.auction;
+
+import com.cavetale.core.command.CommandWarn;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Run an admin command in steps: the query on the database thread
+ * or in the auction store, then the side effects and the rendering
+ * of its result on the main thread.  A CommandWarn thrown by any step is shown to the sender,
+ * any other exception is logged and reported.  If the query does not
+ * finish in time, the sender is told so.  The side effects of a late
+ * result, such as broadcasts after a write, are still applied, only
+ * its rendering is dropped.
+ */
+final class AdminQuery<T> {
+    private static final long TIMEOUT_TICKS = 20L * 10L;
+    private final AuctionPlugin plugin;
+    private final CommandSender sender;
+    private final String name;
+    private final Supplier<CompletableFuture<T>> query;
+    private final Consumer<T> effects;
+    private final Consumer<T> render;
+    private BukkitTask timeoutTask;
+    private boolean finished;
+
+    private AdminQuery(final AuctionPlugin plugin, final CommandSender sender, final String name,
+                       final Supplier<CompletableFuture<T>> query, final Consumer<T> effects, final Consumer<T> render) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.name = name;
+        this.query = query;
+        this.effects = effects;
+        this.render = render;
+    }
+
+    /**
+     * Schedule a query.  Must be called on the main thread.
+     * @param name the subcommand, for error reports
+     * @param query the query, run on the database thread.  It must
+     *   not touch the world or the sender.
+     * @param render called on the main thread with the result
+     */
+    static <T> void run(AuctionPlugin plugin, CommandSender sender, String name, Callable<T> query, Consumer<T> render) {
+        new AdminQuery<>(plugin, sender, name, () -> onDatabase(plugin, query), null, render).start();
+    }
+
+    /**
+     * Schedule a query which writes.
+     * @param effects called on the main thread with the result, even
+     *   if it is late.  It must not message the sender.
+     */
+    static <T> void run(AuctionPlugin plugin, CommandSender sender, String name, Callable<T> query, Consumer<T> effects, Consumer<T> render) {
+        new AdminQuery<>(plugin, sender, name, () -> onDatabase(plugin, query), effects, render).start();
+    }
+
+    /**
+     * Schedule a write in the auction store, so it takes its turn
+     * with the writes of ongoing auctions.
+     * @param operation submits the store operation.  A continuation
+     *   on the main thread may throw a CommandWarn.
+     */
+    static <T> void runStore(AuctionPlugin plugin, CommandSender sender, String name,
+                             Supplier<CompletableFuture<T>> operation, Consumer<T> effects, Consumer<T> render) {
+        new AdminQuery<>(plugin, sender, name, operation, effects, render).start();
+    }
+
+    /**
+     * Run a query on the database thread.  The future completes on
+     * the main thread.
+     */
+    private static <T> CompletableFuture<T> onDatabase(AuctionPlugin plugin, Callable<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        plugin.database.scheduleAsyncTask(() -> {
+                T result = null;
+                Exception error = null;
+                try {
+                    result = query.call();
+                } catch (Exception e) {
+                    error = e;
+                }
+                final T theResult = result;
+                final Exception theError = error;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (theError != null) {
+                            future.completeExceptionally(theError);
+                        } else {
+                            future.complete(theResult);
+                        }
+                    });
+            });
+        return future;
+    }
+
+    private void start() {
+        final long start = System.nanoTime();
+        timeoutTask = Bukkit.getScheduler().runTaskLater(plugin, this::onTimeout, TIMEOUT_TICKS);
+        query.get().whenComplete((result, error) -> {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+                onDone(result, cause, System.nanoTime() - start);
+            });
+    }
+
+    private void onTimeout() {
+        if (finished) return;
+        finished = true;
+        plugin.getLogger().warning("[" + name + "] Admin query timed out");
+        sender.sendMessage(text("Query timed out: " + name, RED));
+    }
+
+    private void onDone(T result, Throwable error, long nanos) {
+        final boolean late = finished;
+        finished = true;
+        if (!late) timeoutTask.cancel();
+        if (error == null && effects != null) {
+            try {
+                effects.accept(result);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        if (late) {
+            if (error != null) plugin.getLogger().log(Level.SEVERE, "[" + name + "] Late admin query failed", error);
+            plugin.getLogger().warning("[" + name + "] Late result not shown after " + (nanos / 1_000_000L) + "ms");
+            return;
+        }
+        if (error != null) {
+            report(error);
+            return;
+        }
+        try {
+            render.accept(result);
+        } catch (Exception e) {
+            report(e);
+        }
+    }
+
+    private void report(Throwable error) {
+        if (error instanceof CommandWarn warn) {
+            sender.sendMessage(text(warn.getMessage(), RED));
+            return;
+        }
+        plugin.getLogger().log(Level.SEVERE, "[" + name + "] Admin query failed", error);
+        sender.sendMessage(text("Query failed: " + name + ": " + error.getMessage(), RED));
+    }
+}
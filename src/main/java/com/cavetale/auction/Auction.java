@@ -1,40 +1,42 @@
 package com.cavetale.auction;
 
+import com.cavetale.auction.sql.InventoryBlobs;
+import com.cavetale.auction.sql.PackedInventory;
 import com.cavetale.auction.sql.SQLAuction;
 import com.cavetale.auction.sql.SQLDelivery;
+import com.cavetale.auction.sql.SQLLog;
 import com.cavetale.auction.sql.SQLPlayerAuction;
 import com.cavetale.core.command.CommandWarn;
 import com.cavetale.core.command.RemotePlayer;
-import com.cavetale.core.connect.Connect;
 import com.cavetale.core.connect.ServerGroup;
 import com.cavetale.core.font.Unicode;
 import com.cavetale.core.font.VanillaItems;
 import com.cavetale.core.item.ItemKinds;
-import com.cavetale.core.money.Money;
-import com.cavetale.core.perm.Perm;
+import com.cavetale.core.util.Json;
 import com.cavetale.mytems.Mytems;
 import com.cavetale.mytems.item.coin.Coin;
 import java.text.DecimalFormat;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.block.Container;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BlockStateMeta;
 import org.bukkit.inventory.meta.BundleMeta;
@@ -58,25 +60,68 @@ import static net.kyori.adventure.text.format.NamedTextColor.*;
  * Hold all runtime information of one auction.
  * Several methods shall only be used by the manager server.
  */
-@Getter @RequiredArgsConstructor
+@Getter
 public final class Auction {
     public static final DecimalFormat MONEY_FORMAT = new DecimalFormat("#.##");
+    private static final int MAX_STALE_LOADS = 20;
     private final AuctionPlugin plugin;
     private final int id;
+    @Getter(AccessLevel.NONE) private final AuctionHost host;
     private SQLAuction auctionRow;
-    private Inventory inventory;
+    private PackedInventory packedInventory;
     private Map<ItemStack, Integer> itemMap = Map.of(); // single item display
     private List<ItemStack> items = List.of();
     private int totalItemCount;
     private final Map<UUID, SQLPlayerAuction> players = new HashMap<>();
     private boolean loading;
     private boolean ended;
+    /**
+     * Bumped by every refresh request.  A load which finishes while
+     * loadedGeneration lags behind will be followed by another one.
+     */
+    private int generation;
+    private int loadedGeneration;
+    /**
+     * Loads in a row which found the database behind our own copy.
+     */
+    private int staleLoads;
+    /**
+     * Replicated updates which arrived during a load, applied once it
+     * is done.
+     */
+    @Getter(AccessLevel.NONE) private List<AuctionUpdate> pendingUpdates = new ArrayList<>();
+    /**
+     * Rendered components shared by all recipients.  The item tags
+     * are reset by computeItems, the names whenever the owner or
+     * winner may have changed.  See invalidateRender.
+     */
+    private Component chatItemTag;
+    private Component chatIconTag;
+    @Getter(AccessLevel.NONE) private Component bundleIconTag;
+    private Component sidebarItemTag;
+    private String ownerName;
+    private String winnerName;
+
+    public Auction(final AuctionPlugin plugin, final int id) {
+        this(plugin, id, new LiveAuctionHost(plugin));
+    }
 
     public Auction(final AuctionPlugin plugin, final SQLAuction row) {
         this(plugin, row.getId());
         this.auctionRow = row;
     }
 
+    Auction(final AuctionPlugin plugin, final int id, final AuctionHost host) {
+        this.plugin = plugin;
+        this.id = id;
+        this.host = host;
+    }
+
+    Auction(final AuctionPlugin plugin, final SQLAuction row, final AuctionHost host) {
+        this(plugin, row.getId(), host);
+        this.auctionRow = row;
+    }
+
     public boolean isReady() {
         return auctionRow != null;
     }
@@ -94,6 +139,7 @@ public final class Auction {
     protected String debug() {
         return "active=" + isActive()
             + " loading=" + loading
+            + " generation=" + loadedGeneration + "/" + generation
             + " auctionRow=" + (auctionRow != null)
             + " items=" + (!items.isEmpty())
             + " state=" + (auctionRow != null ? auctionRow.getState() : "")
@@ -101,39 +147,124 @@ public final class Auction {
     }
 
     protected void log(String msg) {
-        plugin.getLogger().info("[" + id + "] " + msg);
+        host.log("[" + id + "] " + msg);
     }
 
+    /**
+     * An auction which was created by a refresh request has no row
+     * until its first load finishes.  It is neither active nor ended
+     * until then.
+     */
     public boolean isActive() {
-        return !loading && auctionRow.getState().isActive();
+        return !loading && auctionRow != null && auctionRow.getState().isActive();
     }
 
     public boolean hasEnded() {
-        return !loading && !auctionRow.getState().isActive();
+        return !loading && auctionRow != null && !auctionRow.getState().isActive();
     }
 
+    /**
+     * Mark this auction as outdated.  The actual reload is left to
+     * Auctions, which coalesces all requests within one tick.
+     */
+    protected void markDirty() {
+        generation += 1;
+    }
+
+    public boolean isDirty() {
+        return generation != loadedGeneration;
+    }
+
+    /**
+     * Reload the auction and its players from the database.  Refresh
+     * requests which arrive during the load are not lost but cause
+     * exactly one follow-up reload.
+     *
+     * If our copy has a newer version than the database, a write is
+     * still pending.  The copy is kept and the load repeated on the
+     * next tick, a limited number of times.  If the database is still
+     * behind after that, the write was likely lost.  The manager then
+     * writes its copy again, a follower gives up and takes the
+     * database copy.
+     */
     public void load() {
         if (loading) return;
         loading = true;
-        plugin.database.find(SQLAuction.class)
-            .idEq(id)
-            .findUniqueAsync(row -> {
-                    this.auctionRow = row;
-                    computeItems();
-                });
-        loadPlayers(() -> loading = false);
+        final int loadingGeneration = generation;
+        final MetricEvents.Load event = new MetricEvents.Load();
+        event.begin();
+        final long start = System.nanoTime();
+        host.getStore().loadAuction(id).whenComplete((row, error) -> {
+                if (row == null) {
+                    loadPlayers(() -> onLoaded(loadingGeneration, event, start));
+                    return;
+                }
+                if (auctionRow != null && auctionRow.getVersion() > row.getVersion()) {
+                    log("[load] database at version " + row.getVersion() + ", ours " + auctionRow.getVersion());
+                    if (staleLoads < MAX_STALE_LOADS) {
+                        staleLoads += 1;
+                        markDirty();
+                        onLoaded(loadingGeneration, event, start);
+                        return;
+                    }
+                    staleLoads = 0;
+                    if (host.manages(this)) {
+                        host.warn("[" + id + "] Database stuck at version " + row.getVersion()
+                                  + ", ours " + auctionRow.getVersion() + ", writing our copy again");
+                        resave();
+                        markDirty();
+                        onLoaded(loadingGeneration, event, start);
+                        return;
+                    }
+                    host.warn("[" + id + "] Database stuck at version " + row.getVersion()
+                              + ", ours " + auctionRow.getVersion() + ", taking the database copy");
+                }
+                staleLoads = 0;
+                InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                        this.auctionRow = row;
+                        computeItems();
+                        loadPlayers(() -> onLoaded(loadingGeneration, event, start));
+                    });
+            });
+    }
+
+    /**
+     * Write the bid state of the auction and all of its players again.
+     */
+    private void resave() {
+        for (SQLPlayerAuction row : players.values()) {
+            host.getAuctionWriter().savePlayer(row, Set.of("bid", "listenType"));
+        }
+        host.getAuctionWriter().saveAuction(auctionRow, Set.of("currentBid", "currentPrice", "highestBid", "winner", "version"), null);
     }
 
+    private void onLoaded(int loadingGeneration, MetricEvents.Load event, long start) {
+        final long nanos = System.nanoTime() - start;
+        event.end();
+        event.auctionId = id;
+        event.players = players.size();
+        loading = false;
+        loadedGeneration = loadingGeneration;
+        applyPendingUpdates();
+        host.onLoaded(this, event, nanos);
+        if (isDirty()) host.scheduleReload(this);
+    }
+
+    /**
+     * Reload the players.  If that fails, the old ones are kept.
+     */
     public void loadPlayers(Runnable callback) {
-        plugin.database.find(SQLPlayerAuction.class)
-            .eq("auctionId", id)
-            .findListAsync(rows -> {
+        host.getStore().loadPlayers(id).whenComplete((rows, error) -> {
+                if (rows != null) {
+                    final List<SQLPlayerAuction> oldRows = List.copyOf(players.values());
                     players.clear();
                     for (SQLPlayerAuction row : rows) {
                         players.put(row.getPlayer(), row);
                     }
-                    callback.run();
-                });
+                    host.reindexPlayers(this, oldRows);
+                }
+                callback.run();
+            });
     }
 
     public ListenType getListenType(UUID uuid) {
@@ -150,11 +281,12 @@ public final class Auction {
             row = new SQLPlayerAuction(auctionRow, uuid);
             row.setListenType(type);
             players.put(uuid, row);
-            plugin.database.insertAsync(row, null);
+            host.indexPlayer(this, row);
         } else {
             row.setListenType(type);
-            plugin.database.updateAsync(row, Set.of("ListenType"), null);
         }
+        host.getAuctionWriter().savePlayer(row, Set.of("listenType"));
+        host.invalidatePlayer(uuid);
     }
 
     public double getPlayerBid(UUID uuid) {
@@ -165,8 +297,8 @@ public final class Auction {
     }
 
     /**
-     * This is called right before an auctionRow update, which
-     * triggers the refresh broadcast.
+     * This is called right before an auctionRow update.  Both end up
+     * in the same write batch.
      */
     private void setPlayerBid(UUID uuid, double bid, ListenType listenType) {
         SQLPlayerAuction row = players.get(uuid);
@@ -176,12 +308,13 @@ public final class Auction {
             row.setBid(bid);
             row.setListenType(listenType);
             players.put(uuid, row);
-            plugin.database.insertAsync(row, null);
+            host.indexPlayer(this, row);
         } else {
             row.setBid(bid);
             row.setListenType(listenType);
-            plugin.database.updateAsync(row, Set.of("bid", "listenType"), null);
         }
+        host.getAuctionWriter().savePlayer(row, Set.of("bid", "listenType"));
+        host.invalidatePlayer(uuid);
     }
 
     private void addItemMap(ItemStack item) {
@@ -195,30 +328,43 @@ public final class Auction {
     }
 
     public void computeItems() {
-        inventory = auctionRow.parseInventory();
-        if (inventory == null) {
-            itemMap = Map.of();
-            items = List.of();
-            return;
-        }
+        final MetricEvents.ComputeItems event = new MetricEvents.ComputeItems();
+        event.begin();
+        final long start = System.nanoTime();
+        invalidateRender();
+        packedInventory = auctionRow.parsePacked();
+        // The header counts container contents, so no block state
+        // has to be decoded here.
+        totalItemCount = packedInventory.getTotalItems();
         itemMap = new IdentityHashMap<>();
-        items = new ArrayList<>();
-        totalItemCount = 0;
-        for (ItemStack item : inventory) {
-            if (item == null || item.getType().isAir()) continue;
-            items.add(item);
+        items = packedInventory.getItems();
+        for (ItemStack item : items) {
             addItemMap(item);
-            totalItemCount += item.getAmount();
-            if (item.hasItemMeta()
-                && item.getItemMeta() instanceof BlockStateMeta meta
-                && meta.hasBlockState()
-                && meta.getBlockState() instanceof Container container) {
-                for (ItemStack item2 : container.getInventory()) {
-                    if (item2 == null || item2.getType().isAir()) continue;
-                    totalItemCount += item2.getAmount();
-                }
-            }
         }
+        final long nanos = System.nanoTime() - start;
+        event.end();
+        event.auctionId = id;
+        event.itemCount = totalItemCount;
+        host.onItemsComputed(event, nanos);
+    }
+
+    private void invalidateRender() {
+        chatItemTag = null;
+        chatIconTag = null;
+        bundleIconTag = null;
+        sidebarItemTag = null;
+        ownerName = null;
+        winnerName = null;
+    }
+
+    public String getOwnerName() {
+        if (ownerName == null) ownerName = auctionRow.getOwnerName();
+        return ownerName;
+    }
+
+    public String getWinnerName() {
+        if (winnerName == null) winnerName = auctionRow.getWinnerName();
+        return winnerName;
     }
 
     public Component getAuctionTag() {
@@ -364,6 +510,7 @@ public final class Auction {
      * Produce the component to display the item in chat.
      */
     public Component getChatItemTag() {
+        if (chatItemTag != null) return chatItemTag;
         final Component itemComponent;
         if (itemMap.size() == 1) {
             ItemStack theItem = itemMap.keySet().iterator().next();
@@ -375,27 +522,31 @@ public final class Auction {
             hoverItem.editMeta(BundleMeta.class, meta -> meta.setItems(stripItemsForBundle()));
             itemComponent = title.hoverEvent(hoverItem.asHoverEvent());
         }
-        return itemComponent.clickEvent(runCommand("/auc preview " + id));
+        chatItemTag = itemComponent.clickEvent(runCommand("/auc preview " + id));
+        return chatItemTag;
     }
 
     /**
      * Same as getChatItemTag but shorter.
      */
     public Component getChatIconTag() {
+        if (chatIconTag != null) return chatIconTag;
         final Component itemComponent;
         if (itemMap.size() == 1) {
             ItemStack theItem = itemMap.keySet().iterator().next();
             int count = itemMap.getOrDefault(theItem, 1);
-            Component icon = ItemKinds.icon(stripItemForChat(theItem));
+            ItemStack strippedItem = stripItemForChat(theItem);
+            Component icon = ItemKinds.icon(strippedItem);
             if (empty().equals(icon)) {
                 itemComponent = bundleIconTag();
             } else {
-                itemComponent = ItemKinds.iconDescription(stripItemForChat(theItem), count);
+                itemComponent = ItemKinds.iconDescription(strippedItem, count);
             }
         } else {
             itemComponent = bundleIconTag();
         }
-        return itemComponent.clickEvent(runCommand("/auc preview " + id));
+        chatIconTag = itemComponent.clickEvent(runCommand("/auc preview " + id));
+        return chatIconTag;
     }
 
     /**
@@ -404,23 +555,26 @@ public final class Auction {
      * players will disconnect.  It's also just an icon.
      */
     private Component getSidebarItemTag() {
+        if (sidebarItemTag != null) return sidebarItemTag;
         if (itemMap.size() == 1) {
             ItemStack theItem = itemMap.keySet().iterator().next();
-            int count = itemMap.getOrDefault(theItem, 1);
             Component icon = ItemKinds.icon(stripItemForChat(theItem));
-            return empty().equals(icon)
+            sidebarItemTag = empty().equals(icon)
                 ? VanillaItems.BUNDLE.component
                 : icon;
         } else {
-            return VanillaItems.BUNDLE.component;
+            sidebarItemTag = VanillaItems.BUNDLE.component;
         }
+        return sidebarItemTag;
     }
 
     public Component bundleIconTag() {
+        if (bundleIconTag != null) return bundleIconTag;
         ItemStack hoverItem = new ItemStack(Material.BUNDLE);
         Component icon = textOfChildren(VanillaItems.BUNDLE, text(subscript(totalItemCount)));
         hoverItem.editMeta(BundleMeta.class, meta -> meta.setItems(stripItemsForBundle()));
-        return icon.hoverEvent(hoverItem.asHoverEvent());
+        bundleIconTag = icon.hoverEvent(hoverItem.asHoverEvent());
+        return bundleIconTag;
     }
 
     public Component getUserTags(UUID target) {
@@ -439,8 +593,11 @@ public final class Auction {
     }
 
     public Component getAnnouncementMessage(UUID target) {
-        return textOfChildren(getUserTags(target),
-                              getAuctionTag(),
+        return textOfChildren(getUserTags(target), getAnnouncementBody());
+    }
+
+    private Component getAnnouncementBody() {
+        return textOfChildren(getAuctionTag(),
                               text(tiny(" for "), DARK_GRAY),
                               getChatItemTag(),
                               text(tiny(" price "), DARK_GRAY),
@@ -456,65 +613,69 @@ public final class Auction {
         if (!auctionRow.getState().isActive()) {
             throw new CommandWarn("Auction not active");
         }
+        final MetricEvents.Bid event = new MetricEvents.Bid();
+        event.begin();
+        final long start = System.nanoTime();
         final double price = auctionRow.getCurrentPrice();
-        if (auctionRow.hasWinner() && amount - price < 0.01) {
-            if (Math.abs(amount - price) < 0.01) {
-                Component bidTag = getBidTag(player.getUniqueId(), true, false);
-                player.sendMessage(join(separator(space()),
-                                        bidTag,
-                                        text("Click here to bid more than", GREEN),
-                                        Coin.format(price))
-                                   .hoverEvent(bidTag.hoverEvent())
-                                   .clickEvent(bidTag.clickEvent()));
-                return;
-            }
-            throw new CommandWarn(textOfChildren(text("You must bid more than ", RED), Coin.format(price)));
-        } else if (amount < price) {
-            throw new CommandWarn(textOfChildren(text("You must bid at least ", RED), Coin.format(price)));
+        final double highest = auctionRow.getHighestBid();
+        final boolean wasWinner = auctionRow.isWinner(player.getUniqueId());
+        final BidRules.Verdict verdict = BidRules.judge(price, highest, auctionRow.hasWinner(), wasWinner, amount);
+        switch (verdict) {
+        case SAME_PRICE -> {
+            Component bidTag = getBidTag(player.getUniqueId(), true, false);
+            player.sendMessage(join(separator(space()),
+                                    bidTag,
+                                    text("Click here to bid more than", GREEN),
+                                    Coin.format(price))
+                               .hoverEvent(bidTag.hoverEvent())
+                               .clickEvent(bidTag.clickEvent()));
+            return;
+        }
+        case NOT_ABOVE_PRICE -> throw new CommandWarn(textOfChildren(text("You must bid more than ", RED), Coin.format(price)));
+        case BELOW_PRICE -> throw new CommandWarn(textOfChildren(text("You must bid at least ", RED), Coin.format(price)));
+        default -> { }
         }
-        if (!Money.get().has(player.getUniqueId(), amount)) {
+        if (!host.hasMoney(player.getUniqueId(), amount)) {
             throw new CommandWarn(textOfChildren(text("You do not have ", RED), Coin.format(amount)));
         }
-        final double highest = auctionRow.getHighestBid();
-        final boolean winning = !auctionRow.hasWinner() || amount - highest >= 0.01;
-        final boolean raising = winning || amount - price >= 0.01;
-        final boolean wasWinner = auctionRow.isWinner(player.getUniqueId());
         log("[bid]"
             + " highest=" + highest
-            + " winning=" + winning
-            + " raising=" + raising
-            + " wasWinner=" + wasWinner);
-        final BidType bidType;
-        if (wasWinner) {
-            if (!winning) {
-                throw new CommandWarn(textOfChildren(text("You already bid ", RED), Coin.format(highest)));
-            }
+            + " wasWinner=" + wasWinner
+            + " verdict=" + verdict);
+        if (verdict == BidRules.Verdict.NOT_ABOVE_OWN_BID) {
+            throw new CommandWarn(textOfChildren(text("You already bid ", RED), Coin.format(highest)));
+        } else if (!verdict.isAccepted()) {
+            // Should never happen
+            throw new CommandWarn("You must bid more");
+        }
+        final BidType bidType = verdict.toBidType();
+        final Set<String> columns = switch (bidType) {
+        case SILENT -> {
             setPlayerBid(player.getUniqueId(), amount, ListenType.FOCUS);
             auctionRow.setHighestBid(amount);
-            plugin.database.updateAsync(auctionRow, Set.of("highestBid"), this::postBid);
-            bidType = BidType.SILENT;
-        } else {
-            if (winning) {
-                final double newPrice = Math.max(highest, price);
-                auctionRow.setCurrentBid(newPrice);
-                auctionRow.setCurrentPrice(newPrice);
-                auctionRow.setHighestBid(amount);
-                auctionRow.setWinner(player.getUniqueId());
-                setPlayerBid(player.getUniqueId(), amount, ListenType.FOCUS);
-                plugin.database.updateAsync(auctionRow, Set.of("currentBid", "currentPrice", "highestBid", "winner"), this::postBid);
-                bidType = BidType.WINNER;
-            } else if (raising) {
-                auctionRow.setCurrentBid(amount);
-                auctionRow.setCurrentPrice(amount);
-                setPlayerBid(player.getUniqueId(), amount, ListenType.FOCUS);
-                plugin.database.updateAsync(auctionRow, Set.of("currentBid", "currentPrice"), this::postBid);
-                bidType = BidType.RAISE;
-            } else {
-                // Should never happen
-                throw new CommandWarn("You must bid more");
-            }
+            yield Set.of("highestBid", "version");
         }
-        LogType.BID.log(auctionRow, player.getUniqueId(), amount);
+        case WINNER -> {
+            final double newPrice = Math.max(highest, price);
+            auctionRow.setCurrentBid(newPrice);
+            auctionRow.setCurrentPrice(newPrice);
+            auctionRow.setHighestBid(amount);
+            auctionRow.setWinner(player.getUniqueId());
+            winnerName = null;
+            setPlayerBid(player.getUniqueId(), amount, ListenType.FOCUS);
+            yield Set.of("currentBid", "currentPrice", "highestBid", "winner", "version");
+        }
+        case RAISE -> {
+            auctionRow.setCurrentBid(amount);
+            auctionRow.setCurrentPrice(amount);
+            setPlayerBid(player.getUniqueId(), amount, ListenType.FOCUS);
+            yield Set.of("currentBid", "currentPrice", "version");
+        }
+        };
+        auctionRow.setVersion(auctionRow.getVersion() + 1L);
+        host.getAuctionWriter().saveAuction(auctionRow, columns, success -> postBid(success, amount, event, start));
+        host.addLog(new SQLLog(auctionRow, LogType.BID, player.getUniqueId(), amount));
+        replicate(player.getUniqueId());
         if (bidType.isSilent()) {
             player.sendMessage(textOfChildren(getAuctionTag(),
                                               space(),
@@ -522,157 +683,304 @@ public final class Auction {
                                               Coin.format(amount)));
         } else if (bidType.isWinner()) {
             announce(ListenType.FOCUS, Set.of(player.getUniqueId()),
-                     uuid -> textOfChildren(getUserTags(uuid),
-                                            getAuctionTag(),
-                                            space(),
-                                            text(player.getName()),
-                                            text(tiny(" is winning "), DARK_GRAY),
-                                            getChatItemTag(),
-                                            text(tiny(" for "), DARK_GRAY),
-                                            Coin.format(auctionRow.getCurrentPrice())));
+                     textOfChildren(getAuctionTag(),
+                                    space(),
+                                    text(player.getName()),
+                                    text(tiny(" is winning "), DARK_GRAY),
+                                    getChatItemTag(),
+                                    text(tiny(" for "), DARK_GRAY),
+                                    Coin.format(auctionRow.getCurrentPrice())),
+                     true);
         } else if (bidType.isRaise()) {
             announce(ListenType.FOCUS, Set.of(player.getUniqueId()),
-                     uuid -> textOfChildren(getUserTags(uuid),
-                                            getAuctionTag(),
-                                            space(),
-                                            text(player.getName()),
-                                            text(tiny(" raised "), DARK_GRAY),
-                                            getChatItemTag(),
-                                            text(tiny(" to "), DARK_GRAY),
-                                            Coin.format(auctionRow.getCurrentPrice())));
+                     textOfChildren(getAuctionTag(),
+                                    space(),
+                                    text(player.getName()),
+                                    text(tiny(" raised "), DARK_GRAY),
+                                    getChatItemTag(),
+                                    text(tiny(" to "), DARK_GRAY),
+                                    Coin.format(auctionRow.getCurrentPrice())),
+                     true);
         }
     }
 
-    private void postBid(int saveResult) {
-        if (saveResult == 0) {
-            plugin.getLogger().severe("Save failed: " + auctionRow);
+    /**
+     * Called once the bid is saved.  The bid metric spans the whole
+     * bid, from the command to the database acknowledgement.
+     */
+    private void postBid(boolean success, double amount, MetricEvents.Bid event, long start) {
+        final long nanos = System.nanoTime() - start;
+        event.end();
+        event.auctionId = id;
+        event.amount = amount;
+        event.success = success;
+        host.onBidSaved(event, nanos);
+        if (!success) {
+            host.warn("[" + id + "] Save failed: " + auctionRow);
         }
-        Connect.get().broadcastMessage(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
     }
 
     /**
-     * Only ACTIVE auctions should be ticked this way, and only while
-     * on the manager server.
+     * Push the current state along with the given player rows to all
+     * other servers.  Called by the manager after every version bump.
      */
-    protected void managerTick() {
-        Duration remaining = auctionRow.getRemainingDuration();
-        if (remaining.isNegative()) {
-            end();
-            return;
+    private void replicate(UUID... changedPlayers) {
+        AuctionUpdate update = new AuctionUpdate(auctionRow);
+        for (UUID uuid : changedPlayers) {
+            SQLPlayerAuction row = players.get(uuid);
+            if (row != null) update.addPlayer(row);
+        }
+        host.broadcast(Auctions.CONNECT_UPDATE, Json.serialize(update));
+    }
+
+    /**
+     * Apply a replicated update on a follower server.  Each update
+     * carries the full auction state, so it is applied whenever it is
+     * newer than ours, without waiting for the database, which lags
+     * behind the broadcast.  Only the player rows are incremental.
+     * After a gap they are resynced from the database, see
+     * resyncPlayers.  An update which arrives during a load is queued
+     * until the load is done.
+     * @return false if there was a gap, true otherwise
+     */
+    protected boolean applyUpdate(AuctionUpdate update) {
+        if (loading || auctionRow == null) {
+            pendingUpdates.add(update);
+            if (!loading) {
+                markDirty();
+                host.scheduleReload(this);
+            }
+            return true;
+        }
+        final long version = auctionRow.getVersion();
+        if (update.getVersion() <= version) return true; // outdated
+        final boolean gap = update.getVersion() != version + 1L;
+        final boolean reorder = auctionRow.getState() != update.getState()
+            || auctionRow.getEndTime().getTime() != update.getEndTime();
+        auctionRow.setVersion(update.getVersion());
+        auctionRow.setState(update.getState());
+        auctionRow.setCurrentBid(update.getCurrentBid());
+        auctionRow.setCurrentPrice(update.getCurrentPrice());
+        auctionRow.setHighestBid(update.getHighestBid());
+        if (!Objects.equals(auctionRow.getWinner(), update.getWinner())) {
+            auctionRow.setWinner(update.getWinner());
+            winnerName = null;
+        }
+        auctionRow.setEndTime(new Date(update.getEndTime()));
+        for (AuctionUpdate.PlayerUpdate it : update.getPlayers()) {
+            SQLPlayerAuction row = players.get(it.getPlayer());
+            if (row == null) {
+                row = new SQLPlayerAuction(id, it.getPlayer());
+                players.put(it.getPlayer(), row);
+                host.indexPlayer(this, row);
+            }
+            row.setListenType(it.getListenType());
+            row.setBid(it.getBid());
+            host.invalidatePlayer(it.getPlayer());
         }
-        if (Duration.between(auctionRow.getAnnouncedTime().toInstant(), Instant.now()).toMinutes() >= 15) {
-            auctionRow.setAnnouncedTime(new Date());
-            plugin.database.updateAsync(auctionRow, Set.of("announcedTime"), null);
-            announce(ListenType.DEFAULT, Set.of(), this::getAnnouncementMessage);
+        if (reorder) host.invalidateAuction(this);
+        if (gap) resyncPlayers();
+        return !gap;
+    }
+
+    private void applyPendingUpdates() {
+        if (pendingUpdates.isEmpty()) return;
+        final List<AuctionUpdate> list = pendingUpdates;
+        pendingUpdates = new ArrayList<>();
+        if (auctionRow == null) return;
+        list.sort(Comparator.comparingLong(AuctionUpdate::getVersion));
+        for (AuctionUpdate update : list) {
+            applyUpdate(update);
         }
     }
 
+    /**
+     * Fetch the player rows we may have missed in a gap between
+     * updates, without reloading the auction.  The database may be
+     * behind us, so rows are merged: a player bid never goes down, so
+     * a row only replaces ours if its bid is higher.  Rows we have
+     * and the database lacks are kept.
+     */
+    private void resyncPlayers() {
+        host.getStore().loadPlayers(id).thenAccept(rows -> {
+                for (SQLPlayerAuction row : rows) {
+                    SQLPlayerAuction old = players.get(row.getPlayer());
+                    if (old == null) {
+                        players.put(row.getPlayer(), row);
+                        host.indexPlayer(this, row);
+                    } else if (row.getBid() > old.getBid()) {
+                        old.setBid(row.getBid());
+                        old.setListenType(row.getListenType());
+                    } else {
+                        continue;
+                    }
+                    host.invalidatePlayer(row.getPlayer());
+                }
+            });
+    }
+
+    /**
+     * Active auctions are announced every 15 minutes.
+     */
+    protected long getNextAnnouncementTime() {
+        return auctionRow.getAnnouncedTime().getTime() + Duration.ofMinutes(15L).toMillis();
+    }
+
+    /**
+     * Called by the manager once the next announcement is due.
+     */
+    protected void announceNow() {
+        auctionRow.setAnnouncedTime(new Date());
+        host.getStore().updateAuction(auctionRow, Set.of("announcedTime"));
+        announce(ListenType.DEFAULT, Set.of(), getAnnouncementBody(), true);
+    }
+
     public void start() {
         Instant now = Instant.now();
         auctionRow.setState(AuctionState.ACTIVE);
         auctionRow.setStartTime(Date.from(now));
         auctionRow.setEndTime(Date.from(now.plus(Duration.ofSeconds(auctionRow.getFullDuration()))));
-        plugin.database.updateAsync(auctionRow, Set.of("state", "startTime", "endTime"), res -> {
-                if (res == 0) {
-                    plugin.getLogger().severe("res == 0");
+        host.getStore().updateAuction(auctionRow, Set.of("state", "startTime", "endTime")).thenAccept(updated -> {
+                if (!updated) {
+                    host.warn("[" + id + "] Start: auction row not found");
                     return;
                 }
-                Connect.get().broadcastMessage(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
+                host.broadcast(Auctions.CONNECT_REFRESH, "" + id);
             });
         computeItems();
-        LogType.START.log(auctionRow, null, auctionRow.getCurrentPrice());
+        host.invalidateAuction(this);
+        host.scheduleDeadlines(this);
+        host.addLog(new SQLLog(auctionRow, LogType.START, null, auctionRow.getCurrentPrice()));
     }
 
     public void end() {
-        plugin.getLogger().info("End Auction " + id);
+        host.log("End Auction " + id);
         ended = true;
         auctionRow.setState(AuctionState.ENDED);
         auctionRow.setExclusive(false);
-        plugin.database.updateAsync(auctionRow, Set.of("state", "exclusive"), res -> {
-                if (res == 0) return;
-                Connect.get().broadcastMessage(ServerGroup.current(), Auctions.CONNECT_REMOVE, "" + id);
-            });
+        host.invalidateAuction(this);
+        final SQLDelivery delivery;
         if (auctionRow.hasWinner()) {
-            LogType.WIN.log(auctionRow, auctionRow.getWinner(), auctionRow.getCurrentPrice());
-            boolean paid = Money.get().take(auctionRow.getWinner(), auctionRow.getCurrentPrice(), plugin, "Win auction #" + id);
+            host.addLog(new SQLLog(auctionRow, LogType.WIN, auctionRow.getWinner(), auctionRow.getCurrentPrice()));
+            boolean paid = host.takeMoney(auctionRow.getWinner(), auctionRow.getCurrentPrice(), "Win auction #" + id);
             if (paid && !auctionRow.isServerAuction()) {
-                Money.get().give(auctionRow.getOwner(), auctionRow.getCurrentPrice(), plugin, "Auction #" + id);
+                host.giveMoney(auctionRow.getOwner(), auctionRow.getCurrentPrice(), "Auction #" + id);
             }
             double debt = paid
                 ? 0.0
                 : auctionRow.getCurrentPrice();
-            plugin.database.insertAsync(new SQLDelivery(auctionRow, auctionRow.getWinner(), debt), r -> {
-                    plugin.auctions.checkDeliveries();
-                    RemotePlayer remote = Connect.get().getRemotePlayer(auctionRow.getWinner());
-                    if (remote != null) {
-                        remote.sendMessage(textOfChildren(textOfChildren(newline(),
-                                                                         Mytems.MOUSE_LEFT,
-                                                                         text("You have an auction delivery: ", WHITE),
-                                                                         text("/auc pickup", YELLOW),
-                                                                         newline()))
-                                           .hoverEvent(showText(text("/auc pickup", YELLOW)))
-                                           .clickEvent(runCommand("/auc pickup")));
-                    }
-                });
+            delivery = new SQLDelivery(auctionRow, auctionRow.getWinner(), debt);
             if (!paid) {
-                LogType.DEBT.log(auctionRow, auctionRow.getWinner(), debt);
+                host.addLog(new SQLLog(auctionRow, LogType.DEBT, auctionRow.getWinner(), debt));
             }
             announce(ListenType.FOCUS, Set.copyOf(List.of(auctionRow.getWinner(), auctionRow.getOwner())),
                      textOfChildren(getAuctionTag(),
                                     space(),
-                                    text(auctionRow.getWinnerName()),
+                                    text(getWinnerName()),
                                     text(tiny(" wins "), DARK_GRAY),
                                     getChatItemTag(),
                                     text(tiny(" for "), DARK_GRAY),
-                                    Coin.format(auctionRow.getCurrentPrice())));
+                                    Coin.format(auctionRow.getCurrentPrice())),
+                     false);
         } else {
-            LogType.FAIL.log(auctionRow, null, 0.0);
-            if (!auctionRow.isServerAuction()) {
-                plugin.database.insertAsync(new SQLDelivery(auctionRow, auctionRow.getOwner(), 0.0), r -> plugin.auctions.checkDeliveries());
-            }
+            host.addLog(new SQLLog(auctionRow, LogType.FAIL, null, 0.0));
+            delivery = !auctionRow.isServerAuction()
+                ? new SQLDelivery(auctionRow, auctionRow.getOwner(), 0.0)
+                : null;
             announce(ListenType.FOCUS, Set.of(auctionRow.getOwner()),
                      textOfChildren(getAuctionTag(),
                                     space(),
                                     text(tiny(" ended: "), DARK_GRAY),
-                                    getChatItemTag()));
+                                    getChatItemTag()),
+                     false);
         }
+        final boolean won = auctionRow.hasWinner();
+        host.getStore().settle(auctionRow, Set.of("state", "exclusive"), delivery != null ? List.of(delivery) : List.of())
+            .thenAccept(updated -> {
+                    if (updated) {
+                        host.broadcast(Auctions.CONNECT_REMOVE, "" + id);
+                    }
+                    if (delivery == null) return;
+                    host.onDeliveryCreated(delivery.getOwner());
+                    if (won) notifyWinner(delivery.getOwner());
+                });
+    }
+
+    private void notifyWinner(UUID winner) {
+        host.sendMessage(winner, textOfChildren(textOfChildren(newline(),
+                                                               Mytems.MOUSE_LEFT,
+                                                               text("You have an auction delivery: ", WHITE),
+                                                               text("/auc pickup", YELLOW),
+                                                               newline()))
+                         .hoverEvent(showText(text("/auc pickup", YELLOW)))
+                         .clickEvent(runCommand("/auc pickup")));
     }
 
     public void cancel(UUID sender) {
         auctionRow.setState(AuctionState.CANCELLED);
         auctionRow.setExclusive(false);
-        plugin.database.updateAsync(auctionRow, Set.of("state", "exclusive"), r -> {
-                if (r == 0) return;
-                Connect.get().broadcastMessage(ServerGroup.current(), Auctions.CONNECT_REMOVE, "" + id);
-                LogType.CANCEL.log(auctionRow, sender, 0.0);
-                if (!auctionRow.isServerAuction()) {
-                    plugin.database.insertAsync(new SQLDelivery(auctionRow, auctionRow.getOwner(), 0.0), rr -> {
-                            plugin.auctions.checkDeliveries();
-                        });
-                }
-            });
+        host.removeAuction(this);
+        host.getStore().updateAuction(auctionRow, Set.of("state", "exclusive"))
+            .thenCompose(updated -> {
+                    if (!updated) return CompletableFuture.completedFuture(false);
+                    host.broadcast(Auctions.CONNECT_REMOVE, "" + id);
+                    host.addLog(new SQLLog(auctionRow, LogType.CANCEL, sender, 0.0));
+                    if (auctionRow.isServerAuction()) return CompletableFuture.completedFuture(false);
+                    return host.getStore().insertDelivery(new SQLDelivery(auctionRow, auctionRow.getOwner(), 0.0));
+                })
+            .thenAccept(delivered -> {
+                    if (delivered) host.onDeliveryCreated(auctionRow.getOwner());
+                });
     }
 
-    protected void announce(ListenType listenType, Set<UUID> targets, Function<UUID, Component> func) {
-        for (RemotePlayer player : Connect.get().getRemotePlayers()) {
+    /**
+     * Everything about an announcement which depends on the
+     * recipient.  Recipients with the same key get the same message.
+     */
+    private record Recipient(boolean owner, ListenType listenType, double bid) { }
+
+    /**
+     * Send a message to all players who listen to this auction, or
+     * are among the targets.  The body is shared by all recipients.
+     * Only the user tags, if requested, and the info hover differ, so
+     * these are rendered once per distinct recipient.
+     */
+    protected void announce(ListenType listenType, Set<UUID> targets, Component body, boolean userTags) {
+        final MetricEvents.Announce event = new MetricEvents.Announce();
+        event.begin();
+        final long start = System.nanoTime();
+        final Map<Recipient, Component> messages = new HashMap<>();
+        int count = 0;
+        for (RemotePlayer player : host.getRemotePlayers()) {
             if (player.getOriginServer().group != ServerGroup.current()) continue;
-            if (!targets.contains(player.getUniqueId())) {
-                if (getListenType(player.getUniqueId()) != listenType) {
+            final UUID uuid = player.getUniqueId();
+            final ListenType playerListenType = getListenType(uuid);
+            if (!targets.contains(uuid)) {
+                if (playerListenType != listenType) {
                     continue;
                 }
-                if (!Perm.get().has(player.getUniqueId(), "auction.auction")) {
+                if (!host.hasPermission(uuid, "auction.auction")) {
                     continue;
                 }
             }
-            Component message = func.apply(player.getUniqueId())
-                .hoverEvent(showText(join(separator(newline()), getInfoLines(player.getUniqueId(), false))))
-                .clickEvent(runCommand("/auc info " + id));
+            Recipient recipient = new Recipient(auctionRow.isOwner(uuid), playerListenType, getPlayerBid(uuid));
+            Component message = messages.computeIfAbsent(recipient, r -> {
+                    Component head = userTags
+                        ? textOfChildren(getUserTags(uuid), body)
+                        : body;
+                    return head
+                        .hoverEvent(showText(join(separator(newline()), getInfoLines(uuid, false))))
+                        .clickEvent(runCommand("/auc info " + id));
+                });
             player.sendMessage(message);
+            count += 1;
         }
-    }
-
-    protected void announce(ListenType listenType, Set<UUID> targets, Component message) {
-        announce(listenType, targets, p -> message);
+        final long nanos = System.nanoTime() - start;
+        event.end();
+        event.auctionId = id;
+        event.recipients = count;
+        event.renders = messages.size();
+        host.onAnnounce(event, nanos);
     }
 
     public List<Component> getInfoLines(UUID target, boolean book) {
@@ -689,9 +997,9 @@ public final class Auction {
                                  .clickEvent(runCommand("/auc preview " + id)),
                                  getChatIconTag()));
         lines.add(textOfChildren(text(tiny("price "), gray), Format.money(auctionRow.getCurrentPrice(), book)));
-        lines.add(textOfChildren(text(tiny("owner "), gray), text(auctionRow.getOwnerName(), hl)));
+        lines.add(textOfChildren(text(tiny("owner "), gray), text(getOwnerName(), hl)));
         if (auctionRow.hasWinner()) {
-            lines.add(textOfChildren(text(tiny("winner "), gray), text(auctionRow.getWinnerName(), hl)));
+            lines.add(textOfChildren(text(tiny("winner "), gray), text(getWinnerName(), hl)));
         }
         SQLPlayerAuction playerAuction = players.get(target);
         if (playerAuction != null && playerAuction.getBid() >= 0.01) {
@@ -751,7 +1059,7 @@ public final class Auction {
         lines.add(textOfChildren(space(),
                                  Format.duration(auctionRow.getRemainingDuration()),
                                  (auctionRow.hasWinner()
-                                  ? textOfChildren(space(), text(auctionRow.getWinnerName(), DARK_AQUA))
+                                  ? textOfChildren(space(), text(getWinnerName(), DARK_AQUA))
                                   : empty())));
         return lines;
     }
@@ -1,8 +1,15 @@
 package com.cavetale.auction;
 
+import com.cavetale.auction.sql.InventoryBlobs;
+import com.cavetale.auction.sql.InventoryMigration;
+import com.cavetale.auction.sql.InventorySummary;
+import com.cavetale.auction.sql.PackedInventory;
 import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLAuctionSummary;
 import com.cavetale.auction.sql.SQLDelivery;
+import com.cavetale.auction.sql.SQLInventoryBlob;
 import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLLogSummary;
 import com.cavetale.auction.sql.SQLPlayerAuction;
 import com.cavetale.core.command.AbstractCommand;
 import com.cavetale.core.command.CommandArgCompleter;
@@ -12,10 +19,21 @@ import com.cavetale.core.connect.ServerGroup;
 import com.cavetale.core.playercache.PlayerCache;
 import com.cavetale.mytems.util.Gui;
 import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import static net.kyori.adventure.text.Component.join;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
@@ -26,9 +44,13 @@ import static net.kyori.adventure.text.event.HoverEvent.showText;
 import static net.kyori.adventure.text.format.NamedTextColor.*;
 import static net.kyori.adventure.text.format.TextDecoration.*;
 
-public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
+public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> implements Listener {
+    private final Map<CommandSender, HistoryStream> histStreams = new HashMap<>();
+    private final BankIdAllocator bankIds;
+    private BidSimulator simulator;
     protected AuctionAdminCommand(final AuctionPlugin plugin) {
         super(plugin, "auctionadmin");
+        this.bankIds = new BankIdAllocator(plugin);
     }
 
     @Override
@@ -36,8 +58,12 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
         rootNode.addChild("debug").denyTabCompletion()
             .description("Dump auctions debug")
             .senderCaller(this::debug);
-        rootNode.addChild("hist").denyTabCompletion()
-            .description("List auction history")
+        rootNode.addChild("metrics").denyTabCompletion()
+            .description("Show hot path metrics")
+            .senderCaller(this::metrics);
+        rootNode.addChild("hist").arguments("[state:<state>] [owner:<player>] [from:<date>] [to:<date>] | stop")
+            .denyTabCompletion()
+            .description("Stream auction history")
             .senderCaller(this::hist);
         rootNode.addChild("info").arguments("<id>")
             .completers(CommandArgCompleter.supplyList(plugin.auctions::complete))
@@ -71,42 +97,165 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
             .description("Open auction inventory")
             .completers(CommandArgCompleter.integer(i -> i > 0))
             .playerCaller(this::open);
+        rootNode.addChild("simulate").arguments("<bidders> <bids/s> <seconds> [followers] | stop")
+            .completers(CommandArgCompleter.integer(i -> i > 0),
+                        CommandArgCompleter.integer(i -> i > 0),
+                        CommandArgCompleter.integer(i -> i > 0),
+                        CommandArgCompleter.integer(i -> i >= 0))
+            .description("Simulate a bid storm in memory")
+            .senderCaller(this::simulate);
+        rootNode.addChild("migrateinv").arguments("[cleanup]")
+            .completers(CommandArgCompleter.supplyList(() -> List.of("cleanup")))
+            .description("Convert stored inventories to the packed format")
+            .senderCaller(this::migrateInventories);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    @EventHandler
+    private void onPlayerQuit(PlayerQuitEvent event) {
+        HistoryStream stream = histStreams.remove(event.getPlayer());
+        if (stream != null) stream.stop();
+    }
+
+    /**
+     * Start or stop the bid storm simulation.  Only one may run at a
+     * time.
+     */
+    private boolean simulate(CommandSender sender, String[] args) {
+        if (args.length == 1 && args[0].equals("stop")) {
+            if (simulator == null || !simulator.isRunning()) {
+                throw new CommandWarn("No simulation running");
+            }
+            simulator.stop();
+            sender.sendMessage(text("Simulation stopped", YELLOW));
+            return true;
+        }
+        if (args.length != 3 && args.length != 4) return false;
+        if (simulator != null && simulator.isRunning()) {
+            throw new CommandWarn("A simulation is already running");
+        }
+        int bidders = CommandArgCompleter.requireInt(args[0], i -> i > 0);
+        int bidsPerSecond = CommandArgCompleter.requireInt(args[1], i -> i > 0);
+        int seconds = CommandArgCompleter.requireInt(args[2], i -> i > 0);
+        int followers = args.length >= 4
+            ? CommandArgCompleter.requireInt(args[3], i -> i >= 0)
+            : 0;
+        simulator = new BidSimulator(plugin, sender, new BidSimulator.Settings(bidders, bidsPerSecond, seconds, followers));
+        simulator.start();
+        return true;
+    }
+
+    private boolean migrateInventories(CommandSender sender, String[] args) {
+        if (args.length > 1) return false;
+        if (args.length == 1 && !args[0].equals("cleanup")) return false;
+        InventoryMigration migration = new InventoryMigration(msg -> sender.sendMessage(text(msg, YELLOW)),
+                                                              () -> sender.sendMessage(text("Inventory migration done", AQUA)));
+        if (args.length == 0) {
+            sender.sendMessage(text("Migrating inventories...", YELLOW));
+            migration.start();
+        } else {
+            sender.sendMessage(text("Clearing migrated inline inventories...", YELLOW));
+            migration.cleanup();
+        }
+        return true;
     }
 
     private void debug(CommandSender sender) {
         plugin.auctions.debug(sender);
     }
 
-    private void hist(CommandSender sender) {
-        plugin.database.find(SQLAuction.class)
-            .orderByAscending("createdTime")
-            .findListAsync(rows -> {
-                    Component colon = text(":", GRAY);
-                    for (SQLAuction row : rows) {
-                        sender.sendMessage(textOfChildren(text("#" + row.getId(), YELLOW),
-                                                          space(),
-                                                          text("created"), colon, text(Format.BRIEF_DATE_FORMAT.format(row.getCreatedTime()), YELLOW),
-                                                          space(),
-                                                          text("state"), colon, text(row.getState().name().toLowerCase(), YELLOW),
-                                                          space(),
-                                                          text("owner"), colon, text(row.getOwnerName(), YELLOW),
-                                                          space(),
-                                                          text("price"), colon, text(Auction.MONEY_FORMAT.format(row.getCurrentPrice()), YELLOW),
-                                                          space(),
-                                                          text("winner"), colon, text(row.getWinnerName()))
-                                           .clickEvent(suggestCommand("/aucadm info " + row.getId()))
-                                           .hoverEvent(showText(text("/aucadm info " + row.getId(), YELLOW))));
-                    }
-                });
+    private void metrics(CommandSender sender) {
+        Metrics.Snapshot snapshot = plugin.metrics.snapshot();
+        sender.sendMessage(text("Metrics over " + snapshot.uptimeSeconds() + "s", YELLOW));
+        for (Metrics.TimerSnapshot timer : snapshot.timers()) {
+            sender.sendMessage(text(timer.toString(), WHITE));
+        }
+        for (Map.Entry<String, Long> entry : snapshot.counters().entrySet()) {
+            sender.sendMessage(text(entry.getKey() + " " + entry.getValue(), GRAY));
+        }
+    }
+
+    /**
+     * Stream the history, optionally filtered.  Arguments are
+     * state:<state>, owner:<player>, from:<yyyy-mm-dd> and
+     * to:<yyyy-mm-dd>, or stop.
+     */
+    private boolean hist(CommandSender sender, String[] args) {
+        HistoryStream old = histStreams.remove(sender);
+        if (old != null) old.stop();
+        if (args.length == 1 && args[0].equals("stop")) {
+            sender.sendMessage(text(old != null ? "History stopped" : "No history running", YELLOW));
+            return true;
+        }
+        AuctionState state = null;
+        UUID owner = null;
+        Date from = null;
+        Date to = null;
+        for (String arg : args) {
+            String[] toks = arg.split(":", 2);
+            if (toks.length != 2) return false;
+            switch (toks[0]) {
+            case "state" -> {
+                try {
+                    state = AuctionState.valueOf(toks[1].toUpperCase());
+                } catch (IllegalArgumentException iae) {
+                    throw new CommandWarn("Invalid state: " + toks[1]);
+                }
+            }
+            case "owner" -> {
+                PlayerCache player = PlayerCache.forArg(toks[1]);
+                if (player == null) throw new CommandWarn("Player not found: " + toks[1]);
+                owner = player.uuid;
+            }
+            case "from" -> from = requireDate(toks[1]);
+            case "to" -> to = requireDate(toks[1]);
+            default -> throw new CommandWarn("Invalid filter: " + arg);
+            }
+        }
+        HistoryStream stream = new HistoryStream(plugin, sender, new HistoryStream.Filter(state, owner, from, to), this::histLine,
+                                                 s -> histStreams.remove(sender, s));
+        histStreams.put(sender, stream);
+        stream.start();
+        return true;
+    }
+
+    private static Date requireDate(String arg) {
+        try {
+            return Date.from(LocalDate.parse(arg).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException dtpe) {
+            throw new CommandWarn("Invalid date: " + arg);
+        }
+    }
+
+    private Component histLine(SQLAuctionSummary row) {
+        Component colon = text(":", GRAY);
+        return textOfChildren(text("#" + row.getId(), YELLOW),
+                              space(),
+                              AuctionSummaryView.itemsTag(row),
+                              space(),
+                              text("created"), colon, text(Format.briefDate(row.getCreatedTime()), YELLOW),
+                              space(),
+                              text("state"), colon, text(row.getState().name().toLowerCase(), YELLOW),
+                              space(),
+                              text("owner"), colon, text(row.getOwnerName(), YELLOW),
+                              space(),
+                              text("price"), colon, text(Auction.MONEY_FORMAT.format(row.getCurrentPrice()), YELLOW),
+                              space(),
+                              text("winner"), colon, text(row.getWinnerName()))
+            .clickEvent(suggestCommand("/aucadm info " + row.getId()))
+            .hoverEvent(showText(text("/aucadm info " + row.getId(), YELLOW)));
     }
 
     private boolean info(CommandSender sender, String[] args) {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        SQLAuction row = plugin.database.find(SQLAuction.class).idEq(id).findUnique();
-        if (row == null) {
-            throw new CommandWarn("Auction not found: " + id);
-        }
+        AdminQuery.run(plugin, sender, "info", () -> requireAuction(id), row -> {
+                InventoryBlobs.prepare(row.getInventoryHash(), () -> showInfo(sender, row));
+            });
+        return true;
+    }
+
+    private void showInfo(CommandSender sender, SQLAuction row) {
         sender.sendMessage(textOfChildren(text("id ", AQUA), text(row.getId(), YELLOW)));
         sender.sendMessage(textOfChildren(text("owner ", AQUA), text(row.getOwnerName(), YELLOW)));
         sender.sendMessage(textOfChildren(text("winner ", AQUA), text(row.getWinnerName(), YELLOW)));
@@ -128,52 +277,102 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
         auction.computeItems();
         sender.sendMessage(textOfChildren(text("chat-item ", AQUA), auction.getChatItemTag()));
         sender.sendMessage(textOfChildren(text("bundle-item ", AQUA), auction.bundleIconTag()));
-        return true;
+    }
+
+    /**
+     * Find an auction.  Call on the database thread.
+     */
+    private SQLAuction requireAuction(int id) {
+        SQLAuction row = plugin.database.find(SQLAuction.class).idEq(id).findUnique();
+        if (row == null) {
+            throw new CommandWarn("Auction not found: " + id);
+        }
+        return row;
     }
 
     private boolean players(CommandSender sender, String[] args) {
         if (args.length != 1) return false;
         final int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        final List<SQLPlayerAuction> rows = plugin.database.find(SQLPlayerAuction.class).eq("auctionId", id).findList();
-        if (rows.isEmpty()) {
-            throw new CommandWarn("No players found for auction #" + id);
-        }
-        sender.sendMessage(text(rows.size() + " players for auction #" + id, YELLOW));
-        for (SQLPlayerAuction row : rows) {
-            sender.sendMessage(textOfChildren(text(" #", GRAY), text(row.getId(), WHITE),
-                                              text(" " + PlayerCache.nameForUuid(row.getPlayer()), YELLOW),
-                                              text(" bid:", GRAY), text(Auction.MONEY_FORMAT.format(row.getBid()), WHITE),
-                                              text(" listen:", GRAY), text(row.getListenType().name().toLowerCase(), WHITE)));
-        }
+        AdminQuery.run(plugin, sender, "players", () -> {
+                return plugin.database.find(SQLPlayerAuction.class)
+                    .eq("auctionId", id)
+                    .findList();
+            }, rows -> {
+                if (rows.isEmpty()) {
+                    throw new CommandWarn("No players found for auction #" + id);
+                }
+                sender.sendMessage(text(rows.size() + " players for auction #" + id, YELLOW));
+                for (SQLPlayerAuction row : rows) {
+                    sender.sendMessage(textOfChildren(text(" #", GRAY), text(row.getId(), WHITE),
+                                                      text(" " + PlayerCache.nameForUuid(row.getPlayer()), YELLOW),
+                                                      text(" bid:", GRAY), text(Auction.MONEY_FORMAT.format(row.getBid()), WHITE),
+                                                      text(" listen:", GRAY), text(row.getListenType().name().toLowerCase(), WHITE)));
+                }
+            });
         return true;
     }
 
+    private record LogResult(List<SQLLog> logs, SQLLogSummary summary) { }
+
     private boolean auctionLog(CommandSender sender, String[] args) {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        List<SQLLog> logs = plugin.database.find(SQLLog.class)
-            .eq("auctionId", id)
-            .orderByAscending("time")
-            .findList();
-        if (logs.isEmpty()) {
-            throw new CommandWarn("No logs to show: " + id);
-        }
-        sender.sendMessage(text("Logs for auction #" + id, AQUA));
-        for (SQLLog log : logs) {
-            String playerName = log.getPlayer() != null
-                ? PlayerCache.nameForUuid(log.getPlayer())
-                : "N/A";
-            sender.sendMessage(join(separator(space()),
-                                    text(log.getType().name(), YELLOW),
-                                    text(Format.date(log.getTime()), GRAY),
-                                    text(playerName),
-                                    Format.money(log.getMoney())));
-        }
+        AdminQuery.run(plugin, sender, "log", () -> {
+                List<SQLLog> logs = plugin.database.find(SQLLog.class)
+                    .eq("auctionId", id)
+                    .orderByAscending("time")
+                    .findList();
+                SQLLogSummary summary = plugin.database.find(SQLLogSummary.class).eq("auctionId", id).findUnique();
+                return new LogResult(logs, summary);
+            }, result -> {
+                if (result.summary() == null && result.logs().isEmpty()) {
+                    throw new CommandWarn("No logs to show: " + id);
+                }
+                // Logs written after compaction come on top of the
+                // summary.
+                if (result.summary() != null) {
+                    auctionLogSummary(sender, result.summary());
+                    if (result.logs().isEmpty()) return;
+                }
+                sender.sendMessage(text(result.summary() != null
+                                        ? "Logs for auction #" + id + " since archive"
+                                        : "Logs for auction #" + id, AQUA));
+                for (SQLLog log : result.logs()) {
+                    String playerName = log.getPlayer() != null
+                        ? PlayerCache.nameForUuid(log.getPlayer())
+                        : "N/A";
+                    sender.sendMessage(join(separator(space()),
+                                            text(log.getType().name(), YELLOW),
+                                            text(Format.date(log.getTime()), GRAY),
+                                            text(playerName),
+                                            Format.money(log.getMoney())));
+                }
+            });
         return true;
     }
 
+    private void auctionLogSummary(CommandSender sender, SQLLogSummary summary) {
+        sender.sendMessage(text("Archived logs for auction #" + summary.getAuctionId(), AQUA));
+        sender.sendMessage(textOfChildren(text("logs ", AQUA), text(summary.getLogCount(), YELLOW)));
+        sender.sendMessage(textOfChildren(text("bids ", AQUA), text(summary.getBidCount(), YELLOW)));
+        sender.sendMessage(textOfChildren(text("bidders ", AQUA), text(summary.getBidders(), YELLOW)));
+        sender.sendMessage(textOfChildren(text("price ", AQUA), Format.money(summary.getFinalPrice())));
+        sender.sendMessage(textOfChildren(text("winner ", AQUA),
+                                          text(summary.getWinner() != null ? PlayerCache.nameForUuid(summary.getWinner()) : "N/A", YELLOW)));
+        if (summary.getFirstTime() != null) {
+            sender.sendMessage(textOfChildren(text("first ", AQUA), text(Format.date(summary.getFirstTime()), YELLOW)));
+            sender.sendMessage(textOfChildren(text("last ", AQUA), text(Format.date(summary.getLastTime()), YELLOW)));
+        }
+        sender.sendMessage(textOfChildren(text("archive ", AQUA), text(summary.getArchive(), YELLOW)));
+    }
+
     private void deliveryList(CommandSender sender) {
-        List<SQLDelivery> rows = plugin.database.find(SQLDelivery.class).findList();
+        AdminQuery.run(plugin, sender, "deliveries",
+                       () -> plugin.database.find(SQLDelivery.class).findList(),
+                       rows -> deliveryList(sender, rows));
+    }
+
+    private void deliveryList(CommandSender sender, List<SQLDelivery> rows) {
         if (rows.isEmpty()) {
             throw new CommandWarn("No deliveries to show");
         }
@@ -198,22 +397,20 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
     private boolean cancel(CommandSender sender, String[] args) {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        SQLAuction auction = plugin.database.find(SQLAuction.class)
-            .idEq(id).findUnique();
-        if (auction == null) {
-            throw new CommandWarn("Auction not found: " + id);
-        }
-        if (!auction.getState().isCancellable()) {
-            throw new CommandWarn("Auction cannot be cancelled: " + id);
-        }
-        auction.setState(AuctionState.CANCELLED);
-        auction.setExclusive(false);
-        plugin.database.update(auction, "state", "exclusive");
-        if (!auction.isServerAuction()) {
-            plugin.database.insert(new SQLDelivery(auction, auction.getOwner(), 0.0));
-        }
-        Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
-        sender.sendMessage(text("Auction cancelled: " + id, AQUA));
+        AdminQuery.runStore(plugin, sender, "cancel", () -> plugin.store.cancelAuction(id).thenApply(auction -> {
+                    if (auction == null) throw new CommandWarn("Auction not found: " + id);
+                    if (!auction.getState().isCancellable()) {
+                        throw new CommandWarn("Auction cannot be cancelled: " + id);
+                    }
+                    return auction;
+                }), auction -> {
+                if (!auction.isServerAuction()) {
+                    plugin.auctions.onDeliveryCreated(auction.getOwner());
+                }
+                Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
+            }, auction -> {
+                sender.sendMessage(text("Auction cancelled: " + id, AQUA));
+            });
         return true;
     }
 
@@ -227,17 +424,19 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
         gui.setEditable(true);
         gui.onClose(evt -> {
                 if (gui.getInventory().isEmpty()) return;
-                SQLAuction auction = new SQLAuction(SQLAuction.SERVER_UUID, (double) price, gui.getInventory(), Duration.ofMinutes(minutes));
-                List<Integer> ids = plugin.database.find(SQLAuction.class).findValues("id", Integer.class);
-                for (int i = 1;; i += 1) {
-                    if (ids.contains(i)) continue;
-                    auction.setId(i);
-                    int res = plugin.database.insertIgnore(auction);
-                    if (res != 0) break;
-                }
-                LogType.CREATE.log(auction, player.getUniqueId(), (double) price);
-                Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_SCHEDULED, "");
-                player.sendMessage(text("Auction scheduled: " + auction.getId(), AQUA));
+                PackedInventory packed = PackedInventory.of(gui.getInventory());
+                SQLInventoryBlob blob = SQLInventoryBlob.of(packed);
+                SQLAuction auction = new SQLAuction(SQLAuction.SERVER_UUID, (double) price, blob, InventorySummary.of(packed), Duration.ofMinutes(minutes));
+                AdminQuery.run(plugin, player, "bankauction", () -> {
+                        plugin.database.insertIgnore(blob);
+                        bankIds.insert(auction);
+                        return auction;
+                    }, a -> {
+                        LogType.CREATE.log(auction, player.getUniqueId(), (double) price);
+                        Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_SCHEDULED, "");
+                    }, a -> {
+                        player.sendMessage(text("Auction scheduled: " + auction.getId(), AQUA));
+                    });
             });
         gui.open(player);
         return true;
@@ -247,6 +446,7 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
         plugin.auctions.deleteAuction(id, (int[] r) -> {
+                bankIds.release(id);
                 if (r[0] == 0 && r[1] == 0 && r[2] == 0) {
                     sender.sendMessage(text("Nothing was deleted!", RED));
                 } else {
@@ -261,13 +461,15 @@ public final class AuctionAdminCommand extends AbstractCommand<AuctionPlugin> {
     }
 
     private boolean open(Player player, String[] args) {
+        if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        SQLAuction row = plugin.database.find(SQLAuction.class).idEq(id).findUnique();
-        if (row == null) {
-            throw new CommandWarn("Auction not found: " + id);
-        }
-        player.openInventory(row.parseInventory());
-        player.sendMessage(textOfChildren(text("Opened auction #" + row.getId(), AQUA)));
+        AdminQuery.run(plugin, player, "open", () -> requireAuction(id), row -> {
+                InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                        if (!player.isOnline()) return;
+                        player.openInventory(row.parseInventory());
+                        player.sendMessage(textOfChildren(text("Opened auction #" + row.getId(), AQUA)));
+                    });
+            });
         return true;
     }
 }
@@ -1,15 +1,18 @@
 package com.cavetale.auction;
 
+import com.cavetale.auction.sql.InventoryBlobs;
+import com.cavetale.auction.sql.InventorySummary;
+import com.cavetale.auction.sql.PackedInventory;
 import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLAuctionSummary;
 import com.cavetale.auction.sql.SQLDelivery;
-import com.cavetale.auction.sql.SQLPlayerAuction;
+import com.cavetale.auction.sql.SQLInventoryBlob;
 import com.cavetale.core.command.AbstractCommand;
 import com.cavetale.core.command.CommandArgCompleter;
 import com.cavetale.core.command.CommandNode;
 import com.cavetale.core.command.CommandWarn;
 import com.cavetale.core.command.RemotePlayer;
 import com.cavetale.core.connect.Connect;
-import com.cavetale.core.connect.NetworkServer;
 import com.cavetale.core.connect.ServerCategory;
 import com.cavetale.core.connect.ServerGroup;
 import com.cavetale.core.event.item.PlayerReceiveItemsEvent;
@@ -18,14 +21,14 @@ import com.cavetale.core.money.Money;
 import com.cavetale.inventory.mail.ItemMail;
 import com.cavetale.mytems.item.coin.Coin;
 import com.cavetale.mytems.util.Gui;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -37,9 +40,12 @@ import static net.kyori.adventure.text.Component.newline;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.JoinConfiguration.noSeparators;
 import static net.kyori.adventure.text.JoinConfiguration.separator;
+import static net.kyori.adventure.text.event.ClickEvent.runCommand;
+import static net.kyori.adventure.text.event.HoverEvent.showText;
 import static net.kyori.adventure.text.format.NamedTextColor.*;
 
 public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
+    private static final int PAGE_SIZE = 10;
     protected CommandNode bidNode;
 
     protected AuctionCommand(final AuctionPlugin plugin) {
@@ -55,13 +61,15 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
         rootNode.addChild("list").denyTabCompletion()
             .description("List current auctions")
             .playerCaller(this::list);
-        rootNode.addChild("hist").denyTabCompletion()
+        rootNode.addChild("hist").arguments("[page]")
+            .denyTabCompletion()
             .description("View auction history")
             .playerCaller(this::hist);
         rootNode.addChild("queue").denyTabCompletion()
             .description("View auction queue")
             .playerCaller(this::queue);
-        rootNode.addChild("my").denyTabCompletion()
+        rootNode.addChild("my").arguments("[page]")
+            .denyTabCompletion()
             .description("View your own auctions")
             .playerCaller(this::my);
         rootNode.addChild("info").arguments("[id]")
@@ -80,8 +88,7 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
             .description("Place a bid")
             .completers(CommandArgCompleter.integer(i -> i > 0),
                         CommandArgCompleter.integer(i -> i > 0))
-            .remoteServer(NetworkServer.current().getManager())
-            .remotePlayerCaller(this::bid);
+            .playerCaller(this::bid);
         rootNode.addChild("start").denyTabCompletion()
             .permission("auction.start")
             .description("Start an auction")
@@ -95,8 +102,7 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
         rootNode.addChild("cancel").arguments("<id>")
             .description("Cancel your auction")
             .completers(CommandArgCompleter.supplyList(plugin.auctions::complete))
-            .remoteServer(NetworkServer.current().getManager())
-            .remotePlayerCaller(this::cancel);
+            .playerCaller(this::cancel);
     }
 
     private void listAuctionsInBook(Player player, List<Auction> auctions) {
@@ -119,46 +125,162 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
         player.openBook(book);
     }
 
-    private void listAuctionRowsInBook(Player player, List<SQLAuction> rows) {
-        if (rows.isEmpty()) {
+    private void listSummariesInBook(Player player, List<SQLAuctionSummary> rows) {
+        listSummariesInBook(player, rows, null, null);
+    }
+
+    /**
+     * List stored auctions from their summary.  The inventories are
+     * neither loaded nor decoded.
+     * @param firstCommand the command to show the first page, or
+     *   null if this is the first page
+     * @param nextCommand the command to show the next page, or null
+     *   if there is none
+     */
+    private void listSummariesInBook(Player player, List<SQLAuctionSummary> rows, String firstCommand, String nextCommand) {
+        if (rows.isEmpty() && firstCommand == null) {
             player.sendMessage(text("No auctions to show", RED));
             return;
         }
-        List<Auction> auctions = new ArrayList<>(rows.size());
-        for (SQLAuction row : rows) {
-            Auction auction = new Auction(plugin, row);
-            auction.computeItems();
-            auctions.add(auction);
+        List<Component> pages = new ArrayList<>(rows.size() + 1);
+        for (SQLAuctionSummary row : rows) {
+            pages.add(join(separator(newline()), AuctionSummaryView.lines(row, true)));
+        }
+        if (firstCommand != null || nextCommand != null) {
+            List<Component> buttons = new ArrayList<>();
+            if (firstCommand != null) {
+                buttons.add(text("[First Page]", BLUE)
+                            .hoverEvent(showText(text(firstCommand, BLUE)))
+                            .clickEvent(runCommand(firstCommand)));
+            }
+            if (nextCommand != null) {
+                buttons.add(text("[Next Page]", BLUE)
+                            .hoverEvent(showText(text(nextCommand, BLUE)))
+                            .clickEvent(runCommand(nextCommand)));
+            }
+            pages.add(join(separator(newline()), buttons));
         }
-        listAuctionsInBook(player, auctions);
+        ItemStack book = new ItemStack(Material.WRITTEN_BOOK);
+        book.editMeta(m -> {
+                if (!(m instanceof BookMeta meta)) return;
+                meta.setAuthor("cavetale");
+                meta.title(text("auction"));
+                meta.pages(pages);
+            });
+        player.closeInventory();
+        player.openBook(book);
     }
 
     private void list(Player player) {
         listAuctionsInBook(player, plugin.auctions.getActiveAuctions());
     }
 
-    private void hist(Player player) {
-        Date then = Date.from(Instant.now().minus(Duration.ofHours(24)));
-        plugin.database.find(SQLAuction.class)
-            .eq("state", AuctionState.ENDED)
-            .gte("endTime", then)
-            .orderByAscending("endTime")
-            .findListAsync(rows -> listAuctionRowsInBook(player, rows));
+    /**
+     * Ended auctions of the last 24 hours, most recent first, paged
+     * along the (state, endTime, id) key.
+     */
+    private boolean hist(Player player, String[] args) {
+        if (args.length > 1) return false;
+        final PageCursor cursor = args.length == 1 ? PageCursor.require(args[0]) : null;
+        final PageCursor from = cursor != null ? cursor : PageCursor.first();
+        final Date then = new Date(System.currentTimeMillis() - 24L * 60L * 60L * 1000L);
+        findPage(cursor,
+                 callback -> plugin.database.find(SQLAuctionSummary.class)
+                     .eq("state", AuctionState.ENDED)
+                     .eq("endTime", from.date())
+                     .lt("id", from.id())
+                     .orderByDescending("id")
+                     .limit(PAGE_SIZE + 1)
+                     .findListAsync(callback),
+                 callback -> plugin.database.find(SQLAuctionSummary.class)
+                     .eq("state", AuctionState.ENDED)
+                     .gte("endTime", then)
+                     .lt("endTime", from.date())
+                     .orderByDescending("endTime")
+                     .orderByDescending("id")
+                     .limit(PAGE_SIZE + 1)
+                     .findListAsync(callback),
+                 rows -> {
+                     List<SQLAuctionSummary> page = rows.subList(0, Math.min(PAGE_SIZE, rows.size()));
+                     String next = null;
+                     if (rows.size() > PAGE_SIZE) {
+                         SQLAuctionSummary last = page.get(page.size() - 1);
+                         next = "/auc hist " + PageCursor.of(last.getEndTime(), last.getId());
+                     }
+                     listSummariesInBook(player, page, cursor != null ? "/auc hist" : null, next);
+                 });
+        return true;
     }
 
     private void queue(Player player) {
-        plugin.database.find(SQLAuction.class)
+        plugin.database.find(SQLAuctionSummary.class)
             .eq("state", AuctionState.SCHEDULED)
             .orderByAscending("createdTime")
-            .findListAsync(rows -> listAuctionRowsInBook(player, rows));
+            .findListAsync(rows -> listSummariesInBook(player, rows));
     }
 
-    private void my(Player player) {
-        Date then = Date.from(Instant.now().minus(Duration.ofHours(24)));
-        plugin.database.find(SQLAuction.class)
-            .eq("owner", player.getUniqueId())
-            .orderByAscending("createdTime")
-            .findListAsync(rows -> listAuctionRowsInBook(player, rows));
+    /**
+     * The player's own auctions, most recent first, paged along the
+     * (owner, createdTime, id) key.
+     */
+    private boolean my(Player player, String[] args) {
+        if (args.length > 1) return false;
+        final PageCursor cursor = args.length == 1 ? PageCursor.require(args[0]) : null;
+        final PageCursor from = cursor != null ? cursor : PageCursor.first();
+        findPage(cursor,
+                 callback -> plugin.database.find(SQLAuctionSummary.class)
+                     .eq("owner", player.getUniqueId())
+                     .eq("createdTime", from.date())
+                     .lt("id", from.id())
+                     .orderByDescending("id")
+                     .limit(PAGE_SIZE + 1)
+                     .findListAsync(callback),
+                 callback -> plugin.database.find(SQLAuctionSummary.class)
+                     .eq("owner", player.getUniqueId())
+                     .lt("createdTime", from.date())
+                     .orderByDescending("createdTime")
+                     .orderByDescending("id")
+                     .limit(PAGE_SIZE + 1)
+                     .findListAsync(callback),
+                 rows -> {
+                     List<SQLAuctionSummary> page = rows.subList(0, Math.min(PAGE_SIZE, rows.size()));
+                     String next = null;
+                     if (rows.size() > PAGE_SIZE) {
+                         SQLAuctionSummary last = page.get(page.size() - 1);
+                         next = "/auc my " + PageCursor.of(last.getCreatedTime(), last.getId());
+                     }
+                     listSummariesInBook(player, page, cursor != null ? "/auc my" : null, next);
+                 });
+        return true;
+    }
+
+    /**
+     * Fetch the rows after a page cursor, at most PAGE_SIZE + 1 of
+     * them, the extra one only telling that there is another page.
+     * The keyset predicate is time < t OR (time = t AND id < i).  The
+     * finder has no OR, so the rows tied with the cursor time are
+     * fetched first and the older rows second, each with its own
+     * strict range.  The first page has nothing tied.
+     */
+    private static void findPage(PageCursor cursor,
+                                 Consumer<Consumer<List<SQLAuctionSummary>>> tied,
+                                 Consumer<Consumer<List<SQLAuctionSummary>>> older,
+                                 Consumer<List<SQLAuctionSummary>> callback) {
+        if (cursor == null) {
+            older.accept(callback);
+            return;
+        }
+        tied.accept(tiedRows -> {
+                if (tiedRows.size() > PAGE_SIZE) {
+                    callback.accept(tiedRows);
+                    return;
+                }
+                older.accept(olderRows -> {
+                        List<SQLAuctionSummary> rows = new ArrayList<>(tiedRows);
+                        rows.addAll(olderRows.subList(0, Math.min(PAGE_SIZE + 1 - tiedRows.size(), olderRows.size())));
+                        callback.accept(rows);
+                    });
+            });
     }
 
     private void viewAuctionInBook(Player player, Auction auction) {
@@ -174,10 +296,12 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
     }
 
     private void viewAuctionInBook(Player player, SQLAuction row) {
-        Auction auction = new Auction(plugin, row);
-        auction.computeItems();
-        auction.loadPlayers(() -> {
-                viewAuctionInBook(player, auction);
+        InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                Auction auction = new Auction(plugin, row);
+                auction.computeItems();
+                auction.loadPlayers(() -> {
+                        viewAuctionInBook(player, auction);
+                    });
             });
     }
 
@@ -211,7 +335,10 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
             .idEq(id)
             .findUniqueAsync(row -> CommandNode.wrap(player, () -> {
                         if (row == null) throw new CommandWarn("Auction not found: " + id);
-                        plugin.auctions.previewAuction(player, row);
+                        InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                                if (!player.isOnline()) return;
+                                plugin.auctions.previewAuction(player, row);
+                            });
                     }));
         return true;
     }
@@ -219,40 +346,20 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
     private boolean listen(Player player, ListenType listenType, String[] args) {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
-        plugin.database.find(SQLAuction.class)
-            .idEq(id)
-            .findRowCountAsync(count -> {
-                    if (count == 0) {
-                        player.sendMessage(text("Auction not found: " + id, RED));
-                        return;
-                    }
-                    plugin.database.find(SQLPlayerAuction.class)
-                        .eq("auctionId", id)
-                        .eq("player", player.getUniqueId())
-                        .findUniqueAsync(playerAuction -> {
-                                if (playerAuction != null) {
-                                    if (playerAuction.getListenType() != listenType) {
-                                        playerAuction.setListenType(listenType);
-                                        plugin.database.updateAsync(playerAuction, Set.of("listenType"), r -> {
-                                                Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
-                                            });
-                                    }
-                                } else {
-                                    playerAuction = new SQLPlayerAuction(id, player.getUniqueId());
-                                    playerAuction.setListenType(listenType);
-                                    plugin.database.insertAsync(playerAuction, r -> {
-                                            Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
-                                        });
-                                }
-                                if (listenType == ListenType.IGNORE) {
-                                    player.sendMessage(text("You are now ignoring this auction", GREEN));
-                                }
-                                if (listenType == ListenType.FOCUS) {
-                                    player.sendMessage(text("You are now focusing this auction", GREEN));
-                                    viewAuctionInBook(player, id);
-                                }
-                            });
-                });
+        plugin.store.setListenType(id, player.getUniqueId(), listenType).thenAccept(found -> {
+                if (!found) {
+                    player.sendMessage(text("Auction not found: " + id, RED));
+                    return;
+                }
+                Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REFRESH, "" + id);
+                if (listenType == ListenType.IGNORE) {
+                    player.sendMessage(text("You are now ignoring this auction", GREEN));
+                }
+                if (listenType == ListenType.FOCUS) {
+                    player.sendMessage(text("You are now focusing this auction", GREEN));
+                    viewAuctionInBook(player, id);
+                }
+            });
         return true;
     }
 
@@ -278,33 +385,57 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
         return ((double) integer) / 100.0;
     }
 
-    protected boolean bid(RemotePlayer player, String[] args) {
+    /**
+     * Parse the bid and forward it to the shard owning the auction.
+     * Without an id, the auction is resolved from this server's view.
+     */
+    protected boolean bid(Player player, String[] args) {
         if (plugin.auctions.isAwaitingDeliveries(player.getUniqueId())) {
             throw new CommandWarn("You have deliveries waiting for you!");
         }
         if (args.length == 0) return false;
         if (args.length > 2) return false;
-        final Auction auction;
+        final int id;
         final double amount;
         if (args.length == 2) {
-            int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
+            id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
             amount = requireMoney(args[1]);
-            auction = plugin.auctions.getActiveAuction(id);
-            if (auction == null) {
-                throw new CommandWarn("Auction not found: " + id);
-            }
         } else {
             amount = requireMoney(args[0]);
-            List<Auction> aucs = plugin.auctions.getPlayerAuctions(player.getUniqueId());
-            if (aucs.isEmpty()) {
+            Auction auction = plugin.auctions.getBidAuction(player.getUniqueId());
+            if (auction == null) {
                 throw new CommandWarn("Auction not found");
             }
-            auction = aucs.get(0);
+            id = auction.getId();
         }
-        auction.bidCommand(player, amount);
+        plugin.auctions.sendToShard(new ShardCommand(ShardCommand.Type.BID, player.getUniqueId(), id, amount));
         return true;
     }
 
+    /**
+     * Execute a command forwarded by sendToShard.  We are the shard
+     * owning the auction.
+     */
+    protected void onShardCommand(ShardCommand command) {
+        RemotePlayer player = Connect.get().getRemotePlayer(command.getPlayer());
+        if (player == null) return;
+        CommandNode.wrap(player, () -> {
+                switch (command.getType()) {
+                case BID -> shardBid(player, command.getAuctionId(), command.getAmount());
+                case CANCEL -> shardCancel(player, command.getAuctionId());
+                default -> { }
+                }
+            });
+    }
+
+    private void shardBid(RemotePlayer player, int id, double amount) {
+        Auction auction = plugin.auctions.getActiveAuction(id);
+        if (auction == null) {
+            throw new CommandWarn("Auction not found: " + id);
+        }
+        auction.bidCommand(player, amount);
+    }
+
     protected void start(Player player) {
         if (!ServerCategory.current().isSurvival()) {
             throw new CommandWarn("Must be in survival mode!");
@@ -387,19 +518,32 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
                                     Coin.format(price.price)));
             return;
         }
-        SQLAuction auction = new SQLAuction(player.getUniqueId(), price.price, inventory, price.duration);
+        PackedInventory packed = PackedInventory.of(inventory);
+        SQLInventoryBlob blob = SQLInventoryBlob.of(packed);
+        SQLAuction auction = new SQLAuction(player.getUniqueId(), price.price, blob, InventorySummary.of(packed), price.duration);
         auction.setExclusive(true);
         auction.setAuctionFee(price.price);
-        plugin.database.insertAsync(auction, res -> {
-                if (res == null) {
-                    retour(player, inventory);
-                    plugin.getLogger().severe("Failed to insert auction: " + auction);
-                    player.sendMessage(text("Auction creation failed. Please contact an administrator", RED));
-                    return;
+        plugin.database.scheduleAsyncTask(() -> {
+                int res;
+                try {
+                    plugin.database.insertIgnore(blob);
+                    res = plugin.database.insert(auction);
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.SEVERE, "Insert auction", e);
+                    res = 0;
                 }
-                player.sendMessage(text("Auction scheduled!", GREEN));
-                Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_SCHEDULED, "");
-                LogType.CREATE.log(auction, player.getUniqueId(), price.price);
+                final boolean success = res != 0;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (!success) {
+                            retour(player, inventory);
+                            plugin.getLogger().severe("Failed to insert auction: " + auction);
+                            player.sendMessage(text("Auction creation failed. Please contact an administrator", RED));
+                            return;
+                        }
+                        player.sendMessage(text("Auction scheduled!", GREEN));
+                        Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_SCHEDULED, "");
+                        LogType.CREATE.log(auction, player.getUniqueId(), price.price);
+                    });
             });
     }
 
@@ -421,56 +565,63 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
             throw new CommandWarn("Must be in survival mode!");
         }
         final UUID uuid = player.getUniqueId();
-        plugin.database.find(SQLDelivery.class)
-            .eq("owner", uuid)
-            .findUniqueAsync(row -> {
-                    if (row == null) {
-                        player.sendMessage(text("No deliveries found", RED));
+        plugin.store.findDelivery(uuid).thenAccept(row -> {
+                if (row == null) {
+                    player.sendMessage(text("No deliveries found", RED));
+                    return;
+                }
+                if (row.getDebt() >= 0.01) {
+                    if (!Money.get().take(uuid, row.getDebt(), plugin, "Auction debt #" + row.getAuctionId())) {
+                        player.sendMessage(join(noSeparators(),
+                                                text("You cannot afford the debt of ", RED),
+                                                Coin.format(row.getDebt())));
                         return;
+                    } else {
+                        if (!row.wasServerAuction()) {
+                            Money.get().give(row.getMoneyRecipient(), row.getDebt(), plugin, "Auction #" + row.getAuctionId());
+                        }
                     }
-                    if (row.getDebt() >= 0.01) {
-                        if (!Money.get().take(uuid, row.getDebt(), plugin, "Auction debt #" + row.getAuctionId())) {
-                            player.sendMessage(join(noSeparators(),
-                                                    text("You cannot afford the debt of ", RED),
-                                                    Coin.format(row.getDebt())));
+                }
+                plugin.store.deleteDelivery(row).thenAccept(deleted -> {
+                        if (!deleted) {
+                            player.sendMessage(text("Delivery already gone", RED));
                             return;
-                        } else {
-                            if (!row.wasServerAuction()) {
-                                Money.get().give(row.getMoneyRecipient(), row.getDebt(), plugin, "Auction #" + row.getAuctionId());
-                            }
                         }
-                    }
-                    plugin.database.deleteAsync(row, r -> {
-                            if (r == 0) {
-                                player.sendMessage(text("Delivery already gone", RED));
-                                return;
-                            }
-                            Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_DELIVERED, "");
-                            Inventory inv = row.parseInventory();
-                            if (!player.isOnline()) {
-                                retour(player, inv);
-                            } else {
-                                final int size = inv.getSize();
-                                Gui gui = new Gui(plugin)
-                                    .size(size)
-                                    .title(GuiOverlay.HOLES.builder(size, DARK_AQUA)
-                                           .title(text("Auction #" + row.getId(), WHITE))
-                                           .build());
-                                for (int i = 0; i < inv.getSize(); i += 1) {
-                                    gui.setItem(i, inv.getItem(i));
-                                }
-                                gui.onClose(evt -> PlayerReceiveItemsEvent.receiveInventory(player, gui.getInventory()));
-                                gui.setEditable(true);
-                                gui.open(player);
-                            }
-                            LogType.DELIVERED.log(row.getAuctionId(), uuid, row.getDebt());
-                        });
-                });
+                        plugin.auctions.onDeliveryRemoved(uuid);
+                        InventoryBlobs.prepare(row.getInventoryHash(), () -> giveDelivery(player, row));
+                    });
+            });
+    }
+
+    private void giveDelivery(Player player, SQLDelivery row) {
+        Inventory inv = row.parseInventory();
+        if (!player.isOnline()) {
+            retour(player, inv);
+        } else {
+            final int size = inv.getSize();
+            Gui gui = new Gui(plugin)
+                .size(size)
+                .title(GuiOverlay.HOLES.builder(size, DARK_AQUA)
+                       .title(text("Auction #" + row.getId(), WHITE))
+                       .build());
+            for (int i = 0; i < inv.getSize(); i += 1) {
+                gui.setItem(i, inv.getItem(i));
+            }
+            gui.onClose(evt -> PlayerReceiveItemsEvent.receiveInventory(player, gui.getInventory()));
+            gui.setEditable(true);
+            gui.open(player);
+        }
+        LogType.DELIVERED.log(row.getAuctionId(), player.getUniqueId(), row.getDebt());
     }
 
-    private boolean cancel(RemotePlayer player, String[] args) {
+    private boolean cancel(Player player, String[] args) {
         if (args.length != 1) return false;
         int id = CommandArgCompleter.requireInt(args[0], i -> i > 0);
+        plugin.auctions.sendToShard(new ShardCommand(ShardCommand.Type.CANCEL, player.getUniqueId(), id, 0.0));
+        return true;
+    }
+
+    private void shardCancel(RemotePlayer player, int id) {
         // Active Auction
         Auction auction = plugin.auctions.getActiveAuction(id);
         if (auction != null) {
@@ -482,7 +633,7 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
             }
             auction.cancel(player.getUniqueId());
             player.sendMessage(text("Auction cancelled", GREEN));
-            return true;
+            return;
         }
         // Scheduled Auction
         plugin.database.find(SQLAuction.class)
@@ -502,10 +653,9 @@ public final class AuctionCommand extends AbstractCommand<AuctionPlugin> {
                                         LogType.CANCEL.log(row, player.getUniqueId(), 0.0);
                                         plugin.database.insertAsync(new SQLDelivery(row, row.getOwner(), 0.0), rr -> {
                                                 player.sendMessage(text("Auction cancelled", GREEN));
-                                                plugin.auctions.checkDeliveries();
+                                                plugin.auctions.onDeliveryCreated(row.getOwner());
                                             });
                                     }));
                     }));
-        return true;
     }
 }
@@ -0,0 +1,119 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.AuctionStore;
+import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import com.cavetale.core.command.RemotePlayer;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import net.kyori.adventure.text.Component;
+
+/**
+ * What an Auction reaches for outside of itself while it is loaded,
+ * bid on and replicated.  The LiveAuctionHost forwards to the plugin
+ * and the network, the BidSimulator brings its own.
+ *
+ * The on* callbacks receive the ended JFR event of each span with
+ * its fields set.  Only the host decides whether to record the span
+ * and commit the event, so simulated auctions stay out of the live
+ * metrics.
+ */
+interface AuctionHost {
+    AuctionStore getStore();
+
+    AuctionWriter getAuctionWriter();
+
+    void addLog(SQLLog log);
+
+    boolean hasMoney(UUID uuid, double amount);
+
+    /**
+     * Charge the winner of an auction.
+     * @return true if the money was taken
+     */
+    boolean takeMoney(UUID uuid, double amount, String comment);
+
+    void giveMoney(UUID uuid, double amount, String comment);
+
+    boolean hasPermission(UUID uuid, String permission);
+
+    /**
+     * Get the players who may receive announcements.
+     */
+    Collection<? extends RemotePlayer> getRemotePlayers();
+
+    /**
+     * Send a message to a player anywhere on the network, if they
+     * are online.
+     */
+    void sendMessage(UUID uuid, Component message);
+
+    /**
+     * Send a message to all other servers of this group.
+     */
+    void broadcast(String channel, String payload);
+
+    /**
+     * Reload an auction which was marked dirty while loading.
+     */
+    void scheduleReload(Auction auction);
+
+    void indexPlayer(Auction auction, SQLPlayerAuction row);
+
+    /**
+     * The players of an auction were reloaded.
+     * @param oldRows the rows they replaced
+     */
+    void reindexPlayers(Auction auction, List<SQLPlayerAuction> oldRows);
+
+    /**
+     * The bid or listen type of one player changed.
+     */
+    void invalidatePlayer(UUID uuid);
+
+    /**
+     * The state or end time of an auction changed.
+     */
+    void invalidateAuction(Auction auction);
+
+    /**
+     * An auction started and its end and announcement are due.
+     */
+    void scheduleDeadlines(Auction auction);
+
+    /**
+     * An auction was cancelled and is no longer active.
+     */
+    void removeAuction(Auction auction);
+
+    /**
+     * A delivery for the player was stored.
+     */
+    void onDeliveryCreated(UUID uuid);
+
+    /**
+     * Called once an auction finished loading, before a pending
+     * reload is scheduled.
+     */
+    void onLoaded(Auction auction, MetricEvents.Load event, long nanos);
+
+    void onItemsComputed(MetricEvents.ComputeItems event, long nanos);
+
+    void onAnnounce(MetricEvents.Announce event, long nanos);
+
+    /**
+     * Called once a bid was saved or failed to.
+     * @param nanos the time since the bid command
+     */
+    void onBidSaved(MetricEvents.Bid event, long nanos);
+
+    /**
+     * Determine if this server owns the auction and writes its bids.
+     */
+    boolean manages(Auction auction);
+
+    void log(String msg);
+
+    void warn(String msg);
+}
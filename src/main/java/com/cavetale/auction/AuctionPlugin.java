@@ -1,18 +1,29 @@
 package com.cavetale.auction;
 
+import com.cavetale.auction.sql.AuctionStore;
 import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLAuctionStore;
+import com.cavetale.auction.sql.SQLAuctionSummary;
 import com.cavetale.auction.sql.SQLDelivery;
+import com.cavetale.auction.sql.SQLInventoryBlob;
 import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLLogSummary;
 import com.cavetale.auction.sql.SQLPlayerAuction;
 import com.winthier.sql.SQLDatabase;
 import java.util.List;
 import lombok.Getter;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public final class AuctionPlugin extends JavaPlugin {
     private static AuctionPlugin instance;
     @Getter protected final SQLDatabase database = new SQLDatabase(this);
+    @Getter protected AuctionStore store;
+    protected final Metrics metrics = new Metrics(this);
     protected final Auctions auctions = new Auctions(this);
+    protected final AuctionWriter auctionWriter = new AuctionWriter(this);
+    protected final LogWriter logWriter = new LogWriter(this);
+    protected final LogCompactor logCompactor = new LogCompactor(this);
     protected final AuctionAdminCommand auctionAdminCommand = new AuctionAdminCommand(this);
     protected final AuctionCommand auctionCommand = new AuctionCommand(this);
     protected final BidCommand bidCommand = new BidCommand(this);
@@ -20,19 +31,36 @@ public final class AuctionPlugin extends JavaPlugin {
     @Override
     public void onEnable() {
         instance = this;
+        saveDefaultConfig();
+        reloadConfig();
         database.registerTables(List.of(SQLAuction.class,
                                         SQLPlayerAuction.class,
                                         SQLLog.class,
-                                        SQLDelivery.class));
+                                        SQLDelivery.class,
+                                        SQLInventoryBlob.class,
+                                        SQLAuctionSummary.class,
+                                        SQLLogSummary.class));
         if (!database.createAllTables()) {
             throw new IllegalStateException("Database creation failed");
         }
+        store = new SQLAuctionStore(database, getLogger(), task -> Bukkit.getScheduler().runTask(this, task));
+        metrics.enable();
+        logWriter.enable();
         auctions.enable();
+        logCompactor.enable();
         auctionAdminCommand.enable();
         auctionCommand.enable();
         bidCommand.enable();
     }
 
+    @Override
+    public void onDisable() {
+        logWriter.disable();
+        auctionWriter.disable();
+        if (store != null) store.close();
+        metrics.disable();
+    }
+
     public static AuctionPlugin auctionPlugin() {
         return instance;
     }
@@ -0,0 +1,106 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.InventorySummary;
+import com.cavetale.auction.sql.SQLAuctionSummary;
+import com.cavetale.core.font.VanillaItems;
+import com.cavetale.core.item.ItemKinds;
+import com.cavetale.mytems.Mytems;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextColor;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.inventory.ItemStack;
+import static com.cavetale.core.font.Unicode.subscript;
+import static com.cavetale.core.font.Unicode.tiny;
+import static net.kyori.adventure.text.Component.empty;
+import static net.kyori.adventure.text.Component.join;
+import static net.kyori.adventure.text.Component.newline;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.Component.textOfChildren;
+import static net.kyori.adventure.text.JoinConfiguration.separator;
+import static net.kyori.adventure.text.event.ClickEvent.runCommand;
+import static net.kyori.adventure.text.event.HoverEvent.showText;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Render auctions in list views from their stored summary, without
+ * touching their inventory.
+ */
+public final class AuctionSummaryView {
+    private static final Map<String, Component> ICONS = new HashMap<>();
+
+    /**
+     * Get the icon belonging to an icon key.
+     */
+    public static Component icon(String iconKey) {
+        if (iconKey == null || iconKey.equals(InventorySummary.BUNDLE_ICON)) {
+            return VanillaItems.BUNDLE.component;
+        }
+        return ICONS.computeIfAbsent(iconKey, key -> {
+                if (key.startsWith(InventorySummary.MYTEMS_PREFIX)) {
+                    Mytems mytems = Mytems.forId(key.substring(InventorySummary.MYTEMS_PREFIX.length()));
+                    return mytems != null ? mytems.component : VanillaItems.BUNDLE.component;
+                }
+                NamespacedKey namespacedKey = NamespacedKey.fromString(key);
+                Material material = namespacedKey != null ? Registry.MATERIAL.get(namespacedKey) : null;
+                if (material == null) return VanillaItems.BUNDLE.component;
+                Component icon = ItemKinds.icon(new ItemStack(material));
+                return empty().equals(icon) ? VanillaItems.BUNDLE.component : icon;
+            });
+    }
+
+    public static Component itemsTag(SQLAuctionSummary row) {
+        Component result;
+        if (!row.hasSummary()) {
+            result = textOfChildren(VanillaItems.BUNDLE, text("?", GRAY));
+        } else {
+            List<Component> tooltip = new ArrayList<>();
+            tooltip.add(text(row.getItemCount() + " items", WHITE));
+            if (row.getItemKinds() > 1) {
+                tooltip.add(text(row.getItemKinds() + " kinds", GRAY));
+                tooltip.add(textOfChildren(text("most ", GRAY), icon(row.getTopMaterial()),
+                                           text(row.getTopAmount() + " " + row.getTopMaterial(), WHITE)));
+            }
+            tooltip.add(textOfChildren(Mytems.MOUSE_LEFT, text(" Open a preview", GRAY)));
+            result = textOfChildren(icon(row.getIconKey()), text(subscript(row.getItemCount())))
+                .hoverEvent(showText(join(separator(newline()), tooltip)));
+        }
+        return result.clickEvent(runCommand("/auc preview " + row.getId()));
+    }
+
+    public static List<Component> lines(SQLAuctionSummary row, boolean book) {
+        List<Component> lines = new ArrayList<>();
+        TextColor gray = GRAY;
+        TextColor hl = book ? BLACK : WHITE;
+        lines.add(textOfChildren(text(tiny("id "), gray), text("" + row.getId(), hl)));
+        lines.add(textOfChildren(text(tiny("state "), gray), row.getState().displayName));
+        if (row.getState().isActive()) {
+            lines.add(textOfChildren(text(tiny("time "), gray),
+                                     Format.duration(Duration.between(Instant.now(), row.getEndTime().toInstant()), book)));
+        } else if (row.getState() == AuctionState.ENDED) {
+            lines.add(textOfChildren(text(tiny("ended "), gray), text(Format.briefDate(row.getEndTime()), hl)));
+        }
+        lines.add(textOfChildren(text(tiny("items "), gray), itemsTag(row)));
+        lines.add(textOfChildren(text(tiny("price "), gray), Format.money(row.getCurrentPrice(), book)));
+        lines.add(textOfChildren(text(tiny("owner "), gray), text(row.getOwnerName(), hl)));
+        if (row.hasWinner()) {
+            lines.add(textOfChildren(text(tiny("winner "), gray), text(row.getWinnerName(), hl)));
+        }
+        if (!book) return lines;
+        lines.add(text("[Info]", BLUE)
+                  .hoverEvent(showText(join(separator(newline()),
+                                            text("/auc info " + row.getId(), BLUE),
+                                            text("View this auction", GRAY))))
+                  .clickEvent(runCommand("/auc info " + row.getId())));
+        return lines;
+    }
+
+    private AuctionSummaryView() { }
+}
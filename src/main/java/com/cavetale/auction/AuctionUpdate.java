@@ -0,0 +1,55 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import lombok.Data;
+
+/**
+ * Auction state as replicated by the manager server.  Followers
+ * apply any update newer than their copy, since it carries the full
+ * auction state, and resync the player rows from the database
+ * whenever they detect a gap.
+ */
+@Data
+public final class AuctionUpdate {
+    private int id;
+    private long version;
+    private AuctionState state;
+    private double currentBid;
+    private double currentPrice;
+    private double highestBid;
+    private UUID winner;
+    private long endTime;
+    private List<PlayerUpdate> players = new ArrayList<>();
+
+    @Data
+    public static final class PlayerUpdate {
+        private UUID player;
+        private ListenType listenType;
+        private double bid;
+    }
+
+    public AuctionUpdate() { }
+
+    public AuctionUpdate(final SQLAuction row) {
+        this.id = row.getId();
+        this.version = row.getVersion();
+        this.state = row.getState();
+        this.currentBid = row.getCurrentBid();
+        this.currentPrice = row.getCurrentPrice();
+        this.highestBid = row.getHighestBid();
+        this.winner = row.getWinner();
+        this.endTime = row.getEndTime().getTime();
+    }
+
+    public void addPlayer(SQLPlayerAuction row) {
+        PlayerUpdate update = new PlayerUpdate();
+        update.player = row.getPlayer();
+        update.listenType = row.getListenType();
+        update.bid = row.getBid();
+        players.add(update);
+    }
+}
@@ -0,0 +1,134 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.AuctionStore;
+import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import com.cavetale.core.util.Json;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.bukkit.Bukkit;
+
+/**
+ * Write-behind batching of all row changes caused by bids.  Changes
+ * to one auction within the same tick are merged and written by one
+ * store operation at the end of the tick: player rows first, then
+ * the auction row with the union of all changed columns.  A bid storm
+ * thus costs one round of writes per tick, not two per bid.  Logs
+ * go through the LogWriter.  Disabling hands the pending batches to
+ * the store, so no confirmed bid is lost on shutdown.
+ *
+ * The store writes on its own thread while the main thread keeps
+ * bidding, so each batch hands it copies of the rows taken at flush
+ * time.  Ids assigned by an insert are copied back once the batch is
+ * done.
+ */
+public final class AuctionWriter {
+    private final AuctionPlugin plugin;
+    private final AuctionStore store; // null means the plugin's store
+    private final Map<Integer, Batch> batches = new LinkedHashMap<>();
+    private boolean scheduled;
+    private long requests;
+    private long flushes;
+
+    private static final class Batch {
+        private SQLAuction auctionRow;
+        private final Set<String> columns = new HashSet<>();
+        private final Map<UUID, SQLPlayerAuction> playerRows = new LinkedHashMap<>();
+        private final Set<String> playerColumns = new HashSet<>();
+        private final List<Consumer<Boolean>> callbacks = new ArrayList<>();
+    }
+
+    public AuctionWriter(final AuctionPlugin plugin) {
+        this(plugin, null);
+    }
+
+    public AuctionWriter(final AuctionPlugin plugin, final AuctionStore store) {
+        this.plugin = plugin;
+        this.store = store;
+    }
+
+    private Batch batch(int auctionId) {
+        requests += 1;
+        if (!scheduled) {
+            scheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::flush);
+        }
+        return batches.computeIfAbsent(auctionId, i -> new Batch());
+    }
+
+    /**
+     * Queue a player row to be saved.  It will be inserted if it has
+     * no id by the time the batch is written, which may be set by an
+     * earlier batch.  Otherwise the given columns are updated.
+     */
+    public void savePlayer(SQLPlayerAuction row, Set<String> columns) {
+        Batch batch = batch(row.getAuctionId());
+        batch.playerRows.put(row.getPlayer(), row);
+        batch.playerColumns.addAll(columns);
+    }
+
+    /**
+     * Queue an update of the given auction columns.  The callback is
+     * called on the main thread once the whole batch was written.
+     */
+    public void saveAuction(SQLAuction row, Set<String> columns, Consumer<Boolean> callback) {
+        Batch batch = batch(row.getId());
+        batch.auctionRow = row;
+        batch.columns.addAll(columns);
+        if (callback != null) batch.callbacks.add(callback);
+    }
+
+    /**
+     * Hand all pending batches to the store, which finishes them when
+     * closed.  The callbacks will not run.
+     */
+    protected void disable() {
+        flush();
+    }
+
+    private void flush() {
+        scheduled = false;
+        List<Batch> list = List.copyOf(batches.values());
+        batches.clear();
+        for (Batch batch : list) {
+            flushes += 1;
+            final SQLAuction auctionCopy = batch.auctionRow != null
+                ? copy(batch.auctionRow, SQLAuction.class)
+                : null;
+            final List<SQLPlayerAuction> playerRows = List.copyOf(batch.playerRows.values());
+            final List<SQLPlayerAuction> playerCopies = new ArrayList<>(playerRows.size());
+            for (SQLPlayerAuction row : playerRows) {
+                playerCopies.add(copy(row, SQLPlayerAuction.class));
+            }
+            (store != null ? store : plugin.store).applyBid(auctionCopy, batch.columns, playerCopies, batch.playerColumns)
+                .whenComplete((updated, error) -> {
+                        for (int i = 0; i < playerRows.size(); i += 1) {
+                            final SQLPlayerAuction row = playerRows.get(i);
+                            if (row.getId() == null) row.setId(playerCopies.get(i).getId());
+                        }
+                        final boolean success = error == null && updated;
+                        for (Consumer<Boolean> callback : batch.callbacks) {
+                            callback.accept(success);
+                        }
+                    });
+        }
+    }
+
+    private static <T> T copy(T row, Class<T> type) {
+        return Json.deserialize(Json.serialize(row), type, () -> {
+                throw new IllegalStateException("Copy failed: " + row);
+            });
+    }
+
+    public String debug() {
+        return "requests=" + requests
+            + " flushes=" + flushes
+            + " pending=" + batches.size();
+    }
+}
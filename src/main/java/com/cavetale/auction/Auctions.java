@@ -1,8 +1,9 @@
 package com.cavetale.auction;
 
+import com.cavetale.auction.sql.InventoryBlobs;
+import com.cavetale.auction.sql.InventoryCache;
+import com.cavetale.auction.sql.PackedInventory;
 import com.cavetale.auction.sql.SQLAuction;
-import com.cavetale.auction.sql.SQLDelivery;
-import com.cavetale.auction.sql.SQLLog;
 import com.cavetale.auction.sql.SQLPlayerAuction;
 import com.cavetale.core.connect.Connect;
 import com.cavetale.core.connect.NetworkServer;
@@ -11,14 +12,19 @@ import com.cavetale.core.event.connect.ConnectMessageEvent;
 import com.cavetale.core.event.hud.PlayerHudEvent;
 import com.cavetale.core.event.hud.PlayerHudPriority;
 import com.cavetale.core.font.GuiOverlay;
+import com.cavetale.core.util.Json;
 import com.cavetale.mytems.util.Gui;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -31,6 +37,8 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BlockStateMeta;
@@ -45,8 +53,9 @@ import static net.kyori.adventure.text.format.TextDecoration.*;
 /**
  * Manage all active auctions.
  * While every server will maintain an updated instance of this class,
- * only the one manager server will actually edit auctions, accept
- * bids, update player listen types, and send announcements.
+ * only the shard owning an auction will actually edit it, accept
+ * bids, update player listen types, and send announcements.  The
+ * first shard starts scheduled auctions.
  * Auctions can be scheduled from any server, however.
  */
 @RequiredArgsConstructor
@@ -54,14 +63,31 @@ public final class Auctions implements Listener {
     protected static final String CONNECT_REFRESH = "auction:refresh";
     protected static final String CONNECT_SCHEDULED = "auction:scheduled";
     protected static final String CONNECT_DELIVERED = "auction:delivered";
+    protected static final String CONNECT_DELIVERY = "auction:delivery";
     protected static final String CONNECT_REMOVE = "auction:remove";
+    protected static final String CONNECT_UPDATE = "auction:update";
+    protected static final String CONNECT_SHARD_COMMAND = "auction:shard_command";
     private static final Comparator<Auction> END_TIME_COMPARATOR = Comparator
         .comparing(auc -> auc.getAuctionRow().getEndTime());
     private static final Comparator<SQLAuction> CREATED_TIME_COMPARATOR = Comparator
         .comparing(row -> row.getCreatedTime());
+    /**
+     * No auction is scheduled while another one has less than this
+     * remaining, which is 10 minutes in whole minutes, or started
+     * less than a minute ago.
+     */
+    private static final long SCHEDULE_END_GAP = Duration.ofMinutes(11L).toMillis();
+    private static final long SCHEDULE_START_GAP = Duration.ofSeconds(60L).toMillis();
     private final AuctionPlugin plugin;
     private final Map<Integer, Auction> auctionMap = new TreeMap<>();
     private HashSet<UUID> deliveries = new HashSet<>();
+    /**
+     * The manager servers, see config.yml.
+     */
+    private List<NetworkServer> shards = List.of();
+    /**
+     * True if this server is one of the shards.
+     */
     private boolean manage;
     private boolean refreshing;
     private boolean scheduling;
@@ -70,9 +96,93 @@ public final class Auctions implements Listener {
      * waiting to be scheduled.
      */
     private boolean queueEmpty;
+    /**
+     * Auctions waiting to be reloaded at the end of this tick.  Any
+     * number of refresh messages collapse into one reload each.
+     */
+    private final Set<Integer> reloadQueue = new LinkedHashSet<>();
+    private boolean reloadScheduled;
+    private long refreshRequests;
+    private long reloads;
+    private long updatesApplied;
+    private long updateResyncs;
+    private long announcements;
+    private long announceRecipients;
+    private long announceRenders;
+    private long announceNanos;
+    private long announceMaxNanos;
+    /**
+     * Focused active auctions per player, sorted by end time.  An
+     * entry is computed from the player index when needed and dropped
+     * by invalidatePlayer, along with the cached sidebar.
+     */
+    private final Map<UUID, List<Auction>> focusIndex = new HashMap<>();
+    /**
+     * All active auctions sorted by end time.  Rebuilt lazily after
+     * invalidateAuction.
+     */
+    private List<Auction> activeAuctions = List.of();
+    private boolean activeAuctionsDirty = true;
+    private final PlayerAuctionIndex playerIndex = new PlayerAuctionIndex();
+    private final Map<UUID, CachedSidebar> sidebarCache = new HashMap<>();
+
+    private record CachedSidebar(long second, List<Component> lines) { }
+
+    /**
+     * The pending deadlines of one auction.  The announcement deadline
+     * is replaced each time it fires.
+     */
+    private static final class AuctionDeadlines {
+        private final DeadlineQueue.Deadline end;
+        private DeadlineQueue.Deadline announce;
+
+        private AuctionDeadlines(final DeadlineQueue.Deadline end, final DeadlineQueue.Deadline announce) {
+            this.end = end;
+            this.announce = announce;
+        }
+
+        private void cancel() {
+            end.cancel();
+            announce.cancel();
+        }
+    }
+
+    /**
+     * Shards only: End and announcement deadlines of the auctions
+     * owned by this server.
+     */
+    private final DeadlineQueue deadlines = new DeadlineQueue();
+    private final Map<Integer, AuctionDeadlines> auctionDeadlines = new HashMap<>();
+    /**
+     * Primary shard only: Earliest time when the next auction may be
+     * scheduled, or Long.MAX_VALUE if unknown.  Recomputed after
+     * invalidateAuction and whenever an auction finished loading, never
+     * on a timer.
+     */
+    private long scheduleTime;
+    private boolean scheduleTimeDirty = true;
 
     protected void debug(CommandSender sender) {
         sender.sendMessage("refreshing " + refreshing);
+        sender.sendMessage("refreshRequests " + refreshRequests
+                           + " reloads " + reloads
+                           + " saved " + (refreshRequests - reloads));
+        sender.sendMessage("updatesApplied " + updatesApplied
+                           + " updateResyncs " + updateResyncs);
+        sender.sendMessage("inventoryCache " + InventoryCache.debug());
+        sender.sendMessage("store " + plugin.store.debug());
+        sender.sendMessage("auctionWriter " + plugin.auctionWriter.debug());
+        sender.sendMessage("logWriter " + plugin.logWriter.debug());
+        sender.sendMessage("logCompactor " + plugin.logCompactor.debug());
+        sender.sendMessage("announcements " + announcements
+                           + " recipients " + announceRecipients
+                           + " renders " + announceRenders
+                           + " avgMs " + (announcements > 0 ? String.format("%.3f", (double) announceNanos / (double) announcements / 1e6) : "0")
+                           + " maxMs " + String.format("%.3f", (double) announceMaxNanos / 1e6));
+        sender.sendMessage("playerIndex " + playerIndex.size());
+        sender.sendMessage("deadlines " + deadlines.size()
+                           + " fired " + deadlines.getFired()
+                           + " scheduleTime " + (scheduleTime == Long.MAX_VALUE ? "-" : new Date(scheduleTime)));
         sender.sendMessage("scheduling " + scheduling);
         sender.sendMessage("queueEmpty " + queueEmpty);
         for (Auction auction : auctionMap.values()) {
@@ -82,38 +192,171 @@ public final class Auctions implements Listener {
 
     protected void enable() {
         Bukkit.getPluginManager().registerEvents(this, plugin);
-        manage = NetworkServer.current() == NetworkServer.current().getManager();
+        loadShards();
+        manage = shards.contains(NetworkServer.current());
         refresh();
         if (manage) {
-            Bukkit.getScheduler().runTaskTimer(plugin, this::managerTick, 0L, 20L);
-            plugin.getLogger().info("Auction manager active!");
+            Bukkit.getScheduler().runTaskTimer(plugin, this::managerTick, 0L, 1L);
+            plugin.getLogger().info("Auction manager active! Shard " + shards.indexOf(NetworkServer.current()) + "/" + shards.size());
         }
-        Bukkit.getScheduler().runTaskTimer(plugin, this::checkDeliveries, 0L, 200L);
+        // Deliveries are patched by connect messages.  This is
+        // merely the safety net.
+        Bukkit.getScheduler().runTaskTimer(plugin, this::checkDeliveries, 0L, 20L * 60L * 10L);
         Bukkit.getScheduler().runTaskTimer(plugin, this::remindDeliveries, 1200L, 1200L);
     }
 
+    private void loadShards() {
+        List<NetworkServer> list = new ArrayList<>();
+        for (String name : plugin.getConfig().getStringList("shards")) {
+            try {
+                list.add(NetworkServer.valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException iae) {
+                plugin.getLogger().warning("Invalid shard: " + name);
+            }
+        }
+        if (list.isEmpty()) list.add(NetworkServer.current().getManager());
+        shards = List.copyOf(list);
+    }
+
+    public NetworkServer getShard(int auctionId) {
+        return shards.get(Math.floorMod(auctionId, shards.size()));
+    }
+
+    /**
+     * Determine if this server owns the auction.
+     */
+    public boolean manages(int auctionId) {
+        return manage && getShard(auctionId) == NetworkServer.current();
+    }
+
+    private boolean isPrimaryShard() {
+        return shards.get(0) == NetworkServer.current();
+    }
+
+    /**
+     * Determine if this server runs the network wide jobs.
+     */
+    public boolean isPrimaryManager() {
+        return manage && isPrimaryShard();
+    }
+
+    /**
+     * Run a player command on the shard which owns the auction.
+     */
+    public void sendToShard(ShardCommand command) {
+        NetworkServer shard = getShard(command.getAuctionId());
+        command.setServer(shard.name());
+        if (shard == NetworkServer.current()) {
+            plugin.auctionCommand.onShardCommand(command);
+        } else {
+            Connect.get().sendMessage(shard.registeredName(), CONNECT_SHARD_COMMAND, Json.serialize(command));
+        }
+    }
+
     protected void refresh() {
         if (refreshing) return;
         refreshing = true;
-        plugin.database.find(SQLAuction.class)
-            .eq("state", AuctionState.ACTIVE)
-            .findValuesAsync("id", Integer.class, values -> {
-                    refreshing = false;
-                    auctionMap.keySet().removeIf(id -> !values.contains(id));
-                    for (int id : values) refreshAuction(id);
-                });
+        plugin.store.loadActiveIds().whenComplete((values, error) -> {
+                refreshing = false;
+                if (values == null) return;
+                for (int id : List.copyOf(auctionMap.keySet())) {
+                    if (!values.contains(id)) removeAuction(id);
+                }
+                for (int id : values) refreshAuction(id);
+            });
     }
 
     protected void refreshAuction(int id) {
-        auctionMap.computeIfAbsent(id, i -> new Auction(plugin, i)).load();
+        Auction auction = auctionMap.computeIfAbsent(id, i -> new Auction(plugin, i));
+        refreshRequests += 1;
+        auction.markDirty();
+        scheduleReload(auction);
     }
 
+    /**
+     * Queue a dirty auction for reloading.  Called on refresh
+     * requests, and by the auction itself when it was marked dirty
+     * while loading.
+     */
+    protected void scheduleReload(Auction auction) {
+        reloadQueue.add(auction.getId());
+        if (reloadScheduled) return;
+        reloadScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::flushReloads);
+    }
+
+    private void flushReloads() {
+        reloadScheduled = false;
+        List<Integer> ids = List.copyOf(reloadQueue);
+        reloadQueue.clear();
+        for (int id : ids) {
+            Auction auction = auctionMap.get(id);
+            // A loading auction will reschedule itself once done.
+            if (auction == null || auction.isLoading() || !auction.isDirty()) continue;
+            reloads += 1;
+            auction.load();
+        }
+    }
+
+    /**
+     * Record the fan-out of one announcement.
+     * @param recipients the number of players who received it
+     * @param renders the number of distinct messages rendered
+     * @param nanos the time spent
+     */
+    protected void onAnnounce(int recipients, int renders, long nanos) {
+        announcements += 1;
+        announceRecipients += recipients;
+        announceRenders += renders;
+        announceNanos += nanos;
+        announceMaxNanos = Math.max(announceMaxNanos, nanos);
+        plugin.metrics.time(Metrics.ANNOUNCE, nanos);
+        plugin.metrics.count("announce.recipients", recipients);
+        plugin.metrics.count("announce.renders", renders);
+        if (nanos >= 50_000_000L) {
+            plugin.getLogger().warning("Slow announcement: " + (nanos / 1_000_000L) + "ms"
+                                       + " recipients=" + recipients + " renders=" + renders);
+        }
+    }
+
+    /**
+     * Full reconciliation of the deliveries set with the database.
+     */
     public void checkDeliveries() {
-        plugin.database.find(SQLDelivery.class)
-            .findValuesAsync("owner", UUID.class, uuids -> {
-                    deliveries.clear();
-                    deliveries.addAll(uuids);
-                });
+        plugin.store.loadDeliveryOwners().thenAccept(uuids -> {
+                deliveries.clear();
+                deliveries.addAll(uuids);
+            });
+    }
+
+    /**
+     * Look up the deliveries of one player.
+     */
+    public void checkDeliveries(UUID uuid) {
+        plugin.store.countDeliveries(uuid).thenAccept(count -> {
+                if (count > 0) {
+                    deliveries.add(uuid);
+                } else {
+                    deliveries.remove(uuid);
+                }
+            });
+    }
+
+    /**
+     * Call once a delivery was inserted into the database.
+     */
+    public void onDeliveryCreated(UUID uuid) {
+        deliveries.add(uuid);
+        Connect.get().broadcastMessage(ServerGroup.current(), CONNECT_DELIVERY, uuid.toString());
+    }
+
+    /**
+     * Call once a delivery was removed from the database.  The player
+     * may have more.
+     */
+    public void onDeliveryRemoved(UUID uuid) {
+        checkDeliveries(uuid);
+        Connect.get().broadcastMessage(ServerGroup.current(), CONNECT_DELIVERED, uuid.toString());
     }
 
     public void remindDeliveries() {
@@ -133,61 +376,156 @@ public final class Auctions implements Listener {
         if (scheduling) return;
         queueEmpty = true;
         scheduling = true;
-        plugin.database.find(SQLAuction.class)
-            .eq("state", AuctionState.SCHEDULED)
-            .findListAsync(list -> {
+        plugin.store.loadScheduled().whenComplete((list, error) -> {
+                if (list == null || list.isEmpty()) {
                     scheduling = false;
-                    if (list.isEmpty()) return;
-                    if (list.size() > 1) queueEmpty = false;
-                    list.sort(CREATED_TIME_COMPARATOR);
-                    SQLAuction auctionRow = list.get(0);
-                    int id = auctionRow.getId();
-                    Auction auction = new Auction(plugin, auctionRow);
-                    auctionMap.put(id, auction);
-                    auction.start();
-                });
+                    return;
+                }
+                if (list.size() > 1) queueEmpty = false;
+                list.sort(CREATED_TIME_COMPARATOR);
+                SQLAuction auctionRow = list.get(0);
+                InventoryBlobs.prepare(auctionRow.getInventoryHash(), () -> {
+                        scheduling = false;
+                        int id = auctionRow.getId();
+                        Auction auction = new Auction(plugin, auctionRow);
+                        auctionMap.put(id, auction);
+                        auction.start();
+                    });
+            });
     }
 
     public List<Auction> getActiveAuctions() {
-        List<Auction> result = new ArrayList<>();
-        for (Auction auction : auctionMap.values()) {
-            if (!auction.isActive()) continue;
-            result.add(auction);
+        return new ArrayList<>(getSortedActiveAuctions());
+    }
+
+    private List<Auction> getSortedActiveAuctions() {
+        if (activeAuctionsDirty) {
+            activeAuctionsDirty = false;
+            List<Auction> list = new ArrayList<>();
+            for (Auction auction : auctionMap.values()) {
+                if (!auction.isActive()) continue;
+                list.add(auction);
+            }
+            list.sort(END_TIME_COMPARATOR);
+            activeAuctions = list;
         }
-        result.sort(END_TIME_COMPARATOR);
-        return result;
+        return activeAuctions;
     }
 
     /**
      * Get all auctions which a player is not actively ignoring.
+     * Focused auctions come first, each group sorted by end time.
      */
     public List<Auction> getPlayerAuctions(UUID uuid) {
-        List<Auction> result = new ArrayList<>();
-        for (Auction auction : auctionMap.values()) {
-            if (!auction.isActive()) continue;
-            if (auction.getListenType(uuid).isIgnore()) continue;
-            result.add(auction);
+        return playerIndex.sortForPlayer(uuid, getSortedActiveAuctions(), Auction::getId);
+    }
+
+    /**
+     * Find the auction a player most likely wants to bid on when no id
+     * is given: The focused auction ending first, or else the first
+     * ending auction they are not ignoring.  This only looks at the
+     * auctions the player touched, plus the ones they ignore.
+     */
+    public Auction getBidAuction(UUID uuid) {
+        final Map<Integer, SQLPlayerAuction> rows = playerIndex.get(uuid);
+        Auction result = null;
+        for (SQLPlayerAuction row : rows.values()) {
+            if (!row.getListenType().isFocus()) continue;
+            Auction auction = getActiveAuction(row.getAuctionId());
+            if (auction == null) continue;
+            if (result == null || auction.getAuctionRow().getEndTime().before(result.getAuctionRow().getEndTime())) {
+                result = auction;
+            }
         }
-        Comparator<Auction> listenComparator = Comparator
-            .comparingInt(auc -> auc.getListenType(uuid).priority);
-        result.sort(listenComparator.reversed().thenComparing(END_TIME_COMPARATOR));
-        return result;
+        if (result != null) return result;
+        for (Auction auction : getSortedActiveAuctions()) {
+            SQLPlayerAuction row = rows.get(auction.getId());
+            if (row != null && row.getListenType().isIgnore()) continue;
+            return auction;
+        }
+        return null;
     }
 
     /**
      * Get all auctions which a player is focusing.
      */
     public List<Auction> getFocusAuctions(UUID uuid) {
-        List<Auction> result = new ArrayList<>();
-        for (Auction auction : auctionMap.values()) {
-            if (!auction.isActive()) continue;
-            if (!auction.getListenType(uuid).isFocus()) continue;
-            result.add(auction);
+        List<Auction> result = focusIndex.get(uuid);
+        if (result == null) {
+            result = computeFocusAuctions(uuid);
+            focusIndex.put(uuid, result);
         }
+        return result;
+    }
+
+    private List<Auction> computeFocusAuctions(UUID uuid) {
+        List<Auction> result = playerIndex.getFocused(uuid, this::getActiveAuction);
+        if (result.isEmpty()) return List.of();
         result.sort(END_TIME_COMPARATOR);
         return result;
     }
 
+    /**
+     * Call whenever the bid or listen type of one player changed.
+     * Drops their focus index entry and cached sidebar.  Other players
+     * see a new price in their sidebar within the second.
+     */
+    protected void invalidatePlayer(UUID uuid) {
+        focusIndex.remove(uuid);
+        sidebarCache.remove(uuid);
+    }
+
+    /**
+     * Call whenever an auction changes its state or end time, or
+     * is added or removed.  Causes the active list to be sorted again
+     * and invalidates all of its players.
+     */
+    protected void invalidateAuction(Auction auction) {
+        activeAuctionsDirty = true;
+        scheduleTimeDirty = true;
+        for (UUID uuid : auction.getPlayers().keySet()) {
+            invalidatePlayer(uuid);
+        }
+    }
+
+    private boolean isRegistered(Auction auction) {
+        return auctionMap.get(auction.getId()) == auction;
+    }
+
+    /**
+     * Add a new player row of a registered auction to the player
+     * index.
+     */
+    protected void indexPlayer(Auction auction, SQLPlayerAuction row) {
+        if (!isRegistered(auction)) return;
+        playerIndex.put(row);
+        invalidatePlayer(row.getPlayer());
+    }
+
+    /**
+     * Replace all player rows of a registered auction in the player
+     * index after they were reloaded.
+     */
+    protected void reindexPlayers(Auction auction, List<SQLPlayerAuction> oldRows) {
+        if (!isRegistered(auction)) return;
+        playerIndex.replaceAll(oldRows, auction.getPlayers().values());
+        for (SQLPlayerAuction row : oldRows) {
+            invalidatePlayer(row.getPlayer());
+        }
+        invalidateAuction(auction);
+    }
+
+    private void unregister(Auction auction) {
+        playerIndex.removeAll(auction.getPlayers().values());
+        cancelDeadlines(auction.getId());
+        invalidateAuction(auction);
+    }
+
+    protected void removeAuction(int id) {
+        Auction auction = auctionMap.remove(id);
+        if (auction != null) unregister(auction);
+    }
+
     private static final List<Component> DELIVERY_SIDEBAR = List.of(text("You have an", RED, BOLD),
                                                                     text("auction delivery", RED, BOLD),
                                                                     text("/auc pickup", YELLOW));
@@ -196,28 +534,57 @@ public final class Auctions implements Listener {
 
     @EventHandler
     private void onPlayerHud(PlayerHudEvent event) {
+        final MetricEvents.Hud metricEvent = new MetricEvents.Hud();
+        metricEvent.begin();
+        final long start = System.nanoTime();
+        final int auctionCount = renderHud(event);
+        plugin.metrics.time(Metrics.HUD, System.nanoTime() - start);
+        metricEvent.end();
+        if (metricEvent.shouldCommit()) {
+            metricEvent.auctions = auctionCount;
+            metricEvent.commit();
+        }
+    }
+
+    /**
+     * Render the hud of one player.
+     * @return the number of focus auctions shown
+     */
+    private int renderHud(PlayerHudEvent event) {
         Player player = event.getPlayer();
         final UUID uuid = player.getUniqueId();
         if (deliveries.contains(uuid)) {
             event.sidebar(PlayerHudPriority.HIGH, DELIVERY_SIDEBAR);
             event.bossbar(PlayerHudPriority.HIGH, DELIVERY_BOSS_BAR, BossBar.Color.PINK, BossBar.Overlay.PROGRESS, 1.0f);
         }
-        if (!player.hasPermission("auction.auction")) return;
-        if (auctionMap.isEmpty()) return;
         List<Auction> playerAuctions = getFocusAuctions(uuid);
-        if (playerAuctions.isEmpty()) return;
-        List<Component> lines = new ArrayList<>();
-        lines.add(textOfChildren(text("/auc", YELLOW), text("tion", AQUA)));
-        PlayerHudPriority prio = PlayerHudPriority.LOW;
-        for (int i = 0; i < playerAuctions.size(); i += 1) {
-            Auction auction = playerAuctions.get(i);
-            if (!auction.isActive()) continue;
-            boolean focus = auction.getListenType(uuid).isFocus();
-            if (i > 0 && !focus) break;
-            if (focus) prio = PlayerHudPriority.HIGH;
-            lines.addAll(auction.getSidebarLines(uuid));
+        if (playerAuctions.isEmpty()) return 0;
+        if (!player.hasPermission("auction.auction")) return 0;
+        final long second = System.currentTimeMillis() / 1000L;
+        CachedSidebar cached = sidebarCache.get(uuid);
+        if (cached == null || cached.second() != second) {
+            plugin.metrics.count("hud.renders", 1L);
+            List<Component> lines = new ArrayList<>();
+            lines.add(textOfChildren(text("/auc", YELLOW), text("tion", AQUA)));
+            for (Auction auction : playerAuctions) {
+                if (!auction.isActive()) continue;
+                lines.addAll(auction.getSidebarLines(uuid));
+            }
+            cached = new CachedSidebar(second, List.copyOf(lines));
+            sidebarCache.put(uuid, cached);
         }
-        event.sidebar(prio, lines);
+        event.sidebar(PlayerHudPriority.HIGH, cached.lines());
+        return playerAuctions.size();
+    }
+
+    @EventHandler
+    private void onPlayerJoin(PlayerJoinEvent event) {
+        checkDeliveries(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    private void onPlayerQuit(PlayerQuitEvent event) {
+        invalidatePlayer(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
@@ -225,27 +592,50 @@ public final class Auctions implements Listener {
         if (event.getChannel().equals(CONNECT_REFRESH)) {
             int id = Integer.parseInt(event.getPayload());
             refreshAuction(id);
+        } else if (event.getChannel().equals(CONNECT_UPDATE)) {
+            AuctionUpdate update = Json.deserialize(event.getPayload(), AuctionUpdate.class, () -> null);
+            if (update == null) return;
+            Auction auction = auctionMap.get(update.getId());
+            if (auction == null) {
+                updateResyncs += 1;
+                refreshAuction(update.getId());
+            } else if (auction.applyUpdate(update)) {
+                updatesApplied += 1;
+            } else {
+                updateResyncs += 1;
+            }
+        } else if (event.getChannel().equals(CONNECT_SHARD_COMMAND)) {
+            ShardCommand command = Json.deserialize(event.getPayload(), ShardCommand.class, () -> null);
+            // Sent point to point, this is merely a guard.
+            if (command == null || !NetworkServer.current().name().equals(command.getServer())) return;
+            plugin.auctionCommand.onShardCommand(command);
         } else if (event.getChannel().equals(CONNECT_SCHEDULED)) {
             queueEmpty = false;
+        } else if (event.getChannel().equals(CONNECT_DELIVERY)) {
+            deliveries.add(UUID.fromString(event.getPayload()));
         } else if (event.getChannel().equals(CONNECT_DELIVERED)) {
-            checkDeliveries();
+            if (event.getPayload().isEmpty()) {
+                checkDeliveries();
+            } else {
+                checkDeliveries(UUID.fromString(event.getPayload()));
+            }
         } else if (event.getChannel().equals(CONNECT_REMOVE)) {
             int id = Integer.parseInt(event.getPayload());
-            auctionMap.remove(id);
+            removeAuction(id);
         }
     }
 
     public void previewAuction(Player player, SQLAuction row) {
-        Inventory inventory = row.parseInventory();
+        PackedInventory inventory = row.parsePacked();
         final int size = inventory.getSize();
         Gui gui = new Gui(plugin)
             .size(size)
             .title(GuiOverlay.BLANK.builder(size, DARK_AQUA)
                    .title(text("Auction Preview #" + row.getId(), WHITE))
                    .build());
-        for (int i = 0; i < inventory.getSize(); i += 1) {
+        for (int i = 0; i < size; i += 1) {
+            if (inventory.isEmpty(i)) continue;
             ItemStack item = inventory.getItem(i);
-            if (item == null || item.getType().isAir()) continue;
             gui.setItem(i, item, click -> {
                     if (click.isLeftClick() && item.hasItemMeta()
                         && item.getItemMeta() instanceof BlockStateMeta meta
@@ -275,7 +665,11 @@ public final class Auctions implements Listener {
             gui.setItem(i, item);
         }
         gui.setItem(Gui.OUTSIDE, null, click -> {
-                if (click.isLeftClick()) previewAuction(player, row);
+                if (!click.isLeftClick()) return;
+                InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                        if (!player.isOnline()) return;
+                        previewAuction(player, row);
+                    });
             });
         gui.open(player);
     }
@@ -287,31 +681,109 @@ public final class Auctions implements Listener {
             : null;
     }
 
-    private void managerTick() {
-        if (refreshing) return;
-        boolean anyEndsWithin = false;
-        boolean anyLoading = false;
-        boolean anyStartedRecently = false;
-        auctionMap.values().removeIf(Auction::hasEnded);
+    /**
+     * Called by an auction whenever it finished loading.
+     */
+    protected void onAuctionLoaded(Auction auction) {
+        scheduleTimeDirty = true;
+        if (!manages(auction.getId()) || !isRegistered(auction)) return;
+        if (auction.hasEnded()) {
+            removeAuction(auction.getId());
+        } else {
+            scheduleDeadlines(auction);
+        }
+    }
+
+    /**
+     * Owning shard only: (Re)schedule the end and next announcement of
+     * an active auction.
+     */
+    protected void scheduleDeadlines(Auction auction) {
+        if (!manages(auction.getId())) return;
+        final int id = auction.getId();
+        cancelDeadlines(id);
+        if (!auction.getAuctionRow().getState().isActive()) return;
+        auctionDeadlines.put(id, new AuctionDeadlines(deadlines.schedule(auction.getAuctionRow().getEndTime().getTime(), () -> onEndDeadline(id)),
+                                                      deadlines.schedule(auction.getNextAnnouncementTime(), () -> onAnnounceDeadline(id))));
+    }
+
+    private void cancelDeadlines(int id) {
+        AuctionDeadlines entry = auctionDeadlines.remove(id);
+        if (entry != null) entry.cancel();
+    }
+
+    private void onEndDeadline(int id) {
+        Auction auction = auctionMap.get(id);
+        if (auction == null || !auction.isActive() || auction.isEnded()) return;
+        if (auction.getAuctionRow().getEndTime().getTime() > System.currentTimeMillis()) {
+            scheduleDeadlines(auction); // End time moved
+            return;
+        }
+        auction.end();
+        removeAuction(id);
+    }
+
+    private void onAnnounceDeadline(int id) {
+        Auction auction = auctionMap.get(id);
+        if (auction == null || !auction.isActive() || auction.isEnded()) return;
+        if (System.currentTimeMillis() >= auction.getNextAnnouncementTime()) {
+            auction.announceNow();
+        }
+        AuctionDeadlines entry = auctionDeadlines.get(id);
+        if (entry != null) {
+            entry.announce = deadlines.schedule(auction.getNextAnnouncementTime(), () -> onAnnounceDeadline(id));
+        }
+    }
+
+    /**
+     * Compute the earliest time when a new auction may be scheduled:
+     * when no auction is in its final minutes and none started within
+     * the last minute.  An auction in its final minutes blocks
+     * scheduling until it has ended.  Waiting for the latest start may
+     * let another auction enter its final minutes, so this is repeated
+     * until the time settles.
+     *
+     * @return the time, or Long.MAX_VALUE if it cannot be known yet
+     *   because an auction is loading or overdue
+     */
+    private long computeScheduleTime(long now) {
+        long result = now;
         for (Auction auction : auctionMap.values()) {
-            if (auction.isLoading()) {
-                anyLoading = true;
-                continue;
-            }
-            if (auction.isActive() && !auction.isEnded()) {
-                auction.managerTick();
-            }
-            if (auction.getAuctionRow().getRemainingDuration().toMinutes() <= 10L) {
-                anyEndsWithin = true;
-            }
-            if (Duration.between(auction.getAuctionRow().getStartTime().toInstant(), Instant.now()).toSeconds() < 60L) {
-                anyStartedRecently = true;
+            if (auction.isLoading() || !auction.isReady()) return Long.MAX_VALUE;
+            if (auction.hasEnded()) continue;
+            result = Math.max(result, auction.getAuctionRow().getStartTime().getTime() + SCHEDULE_START_GAP);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Auction auction : auctionMap.values()) {
+                if (auction.hasEnded()) continue;
+                final long endTime = auction.getAuctionRow().getEndTime().getTime();
+                if (endTime <= result) {
+                    // Overdue, the end is about to be processed.
+                    if (endTime <= now) return Long.MAX_VALUE;
+                    continue;
+                }
+                if (endTime - result >= SCHEDULE_END_GAP) continue;
+                result = endTime;
+                changed = true;
             }
         }
-        if (!anyLoading && !anyEndsWithin && !anyStartedRecently && !queueEmpty) {
-            plugin.getLogger().info("scheduling...");
-            schedule();
+        return result;
+    }
+
+    private void managerTick() {
+        if (refreshing) return;
+        final long now = System.currentTimeMillis();
+        deadlines.runDue(now);
+        if (!isPrimaryShard() || queueEmpty || scheduling) return;
+        if (scheduleTimeDirty) {
+            scheduleTimeDirty = false;
+            scheduleTime = computeScheduleTime(now);
         }
+        if (now < scheduleTime) return;
+        plugin.getLogger().info("scheduling...");
+        schedule();
     }
 
     public boolean isAwaitingDeliveries(UUID uuid) {
@@ -327,13 +799,9 @@ public final class Auctions implements Listener {
     }
 
     public void deleteAuction(int id, Consumer<int[]> callback) {
-        int[] results = new int[3];
-        auctionMap.remove(id);
-        plugin.database.find(SQLAuction.class).idEq(id).deleteAsync(r -> results[0] += r);
-        plugin.database.find(SQLLog.class).eq("auctionId", id).deleteAsync(r -> results[1] += r);
-        plugin.database.find(SQLPlayerAuction.class).eq("auctionId", id).deleteAsync(r -> {
+        removeAuction(id);
+        plugin.store.deleteAuction(id).thenAccept(results -> {
                 Connect.get().broadcastMessageToAll(ServerGroup.current(), Auctions.CONNECT_REMOVE, "" + id);
-                results[2] += r;
                 callback.accept(results);
             });
     }
@@ -0,0 +1,51 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLAuction;
+import java.util.BitSet;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Pick ids for bank auctions.  These fill the gaps left by deleted
+ * auctions, lowest first.  The used ids are loaded once into a
+ * bitmap and kept up to date with every allocation, so finding the
+ * next gap does not touch the table.  Player auctions take their ids
+ * from auto increment and may claim a gap concurrently, which the
+ * insert detects.
+ *
+ * All methods may be called from any thread.  Insert blocks on the
+ * database, so call it on the database thread.
+ */
+@RequiredArgsConstructor
+final class BankIdAllocator {
+    private final AuctionPlugin plugin;
+    private BitSet used;
+
+    /**
+     * Insert an auction with the lowest free id.
+     * @return the id
+     */
+    synchronized int insert(SQLAuction auction) {
+        if (used == null) load();
+        while (true) {
+            int id = used.nextClearBit(1);
+            used.set(id);
+            auction.setId(id);
+            if (plugin.database.insertIgnore(auction) != 0) return id;
+        }
+    }
+
+    private void load() {
+        used = new BitSet();
+        used.set(0);
+        for (Integer id : plugin.database.find(SQLAuction.class).findValues("id", Integer.class)) {
+            used.set(id);
+        }
+    }
+
+    /**
+     * An auction was deleted, so its id may be reused.
+     */
+    synchronized void release(int id) {
+        if (used != null) used.clear(id);
+    }
+}
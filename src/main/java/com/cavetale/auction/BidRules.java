@@ -0,0 +1,64 @@
+package com.cavetale.auction;
+
+/**
+ * Decide what a bid does, given the state of the auction.  Ownership,
+ * auction state and money are checked by the caller.  Amounts within
+ * EPSILON of each other count as equal.
+ */
+public final class BidRules {
+    public static final double EPSILON = 0.01;
+
+    public enum Verdict {
+        WINNER, // A new winner
+        RAISE, // The price was raised
+        SILENT, // The winner raised their own bid
+        SAME_PRICE, // Equal to the price of a won auction
+        NOT_ABOVE_PRICE, // Must bid more than the price
+        BELOW_PRICE, // Must bid at least the price
+        NOT_ABOVE_OWN_BID, // The winner must bid more than before
+        INVALID; // Should never happen
+
+        public boolean isAccepted() {
+            return this == WINNER || this == RAISE || this == SILENT;
+        }
+
+        public BidType toBidType() {
+            return switch (this) {
+            case WINNER -> BidType.WINNER;
+            case RAISE -> BidType.RAISE;
+            case SILENT -> BidType.SILENT;
+            default -> throw new IllegalStateException("Not accepted: " + this);
+            };
+        }
+    }
+
+    /**
+     * @param price the current price
+     * @param highest the highest bid, known only to the winner
+     * @param hasWinner whether the auction has a winner
+     * @param wasWinner whether the bidder is the winner
+     * @param amount the amount bid
+     */
+    public static Verdict judge(double price, double highest, boolean hasWinner, boolean wasWinner, double amount) {
+        if (hasWinner && amount - price < EPSILON) {
+            return Math.abs(amount - price) < EPSILON
+                ? Verdict.SAME_PRICE
+                : Verdict.NOT_ABOVE_PRICE;
+        } else if (amount < price) {
+            return Verdict.BELOW_PRICE;
+        }
+        final boolean winning = !hasWinner || amount - highest >= EPSILON;
+        final boolean raising = winning || amount - price >= EPSILON;
+        if (wasWinner) {
+            return winning ? Verdict.SILENT : Verdict.NOT_ABOVE_OWN_BID;
+        } else if (winning) {
+            return Verdict.WINNER;
+        } else if (raising) {
+            return Verdict.RAISE;
+        } else {
+            return Verdict.INVALID;
+        }
+    }
+
+    private BidRules() { }
+}
@@ -0,0 +1,441 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.AuctionStore;
+import com.cavetale.auction.sql.InventoryBlobs;
+import com.cavetale.auction.sql.InventoryCache;
+import com.cavetale.auction.sql.InventorySummary;
+import com.cavetale.auction.sql.MemoryAuctionStore;
+import com.cavetale.auction.sql.PackedInventory;
+import com.cavetale.auction.sql.SQLAuction;
+import com.cavetale.auction.sql.SQLInventoryBlob;
+import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import com.cavetale.core.command.CommandWarn;
+import com.cavetale.core.command.RemotePlayer;
+import com.cavetale.core.connect.NetworkServer;
+import com.cavetale.core.util.Json;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.logging.Level;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Replay the final seconds of a popular auction without touching the
+ * database, the economy or the network.  Synthetic bidders bid on one
+ * simulated auction at a fixed rate through the real bid command.
+ * The auction lives in a MemoryAuctionStore with its own
+ * AuctionWriter and replicates over a fake bus to simulated follower
+ * copies, which apply every update like a real follower would and
+ * reload from the store when they detect a gap.
+ *
+ * The inventory is packed into a blob like for a real auction, but
+ * the blob only lives in the InventoryCache, never in the database.
+ *
+ * The simulator is the AuctionHost of all these auctions.  The
+ * report is written as json to the simulations folder, so runs of
+ * different builds can be compared.  The random seed is fixed.
+ */
+final class BidSimulator implements AuctionHost {
+    private static final double START_PRICE = 100.0;
+    private static final int LOG_BATCH = 100;
+    private static final int DRAIN_TICKS = 100;
+    private final AuctionPlugin plugin;
+    private final CommandSender sender;
+    private final Settings settings;
+    private final MemoryAuctionStore store;
+    private final AuctionWriter auctionWriter;
+    private final List<RemotePlayer> bidders = new ArrayList<>();
+    private final List<Auction> followers = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(1L);
+    private List<SQLLog> logQueue = new ArrayList<>();
+    private PackedInventory packed;
+    private SQLInventoryBlob blob;
+    private Auction manager;
+    private BukkitTask task;
+    private int ticks;
+    private int drainTicks;
+    private double bidCredit;
+    // Statistics
+    private long attempted;
+    private long accepted;
+    private long saved;
+    private long failed;
+    private long commandNanos;
+    private long[] latencies = new long[1024];
+    private int latencyCount;
+    private long busMessages;
+    private long resyncs;
+    private long chatMessages;
+    private long logs;
+    private long storeOpsBefore;
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * @param bidders the number of synthetic bidders
+     * @param bidsPerSecond the bid rate
+     * @param seconds the length of the storm
+     * @param followers the number of simulated follower servers
+     */
+    record Settings(int bidders, int bidsPerSecond, int seconds, int followers) { }
+
+    record Report(String type,
+                  long time,
+                  Settings settings,
+                  double wallSeconds,
+                  long attempted,
+                  long accepted,
+                  long rejected,
+                  long saved,
+                  long failed,
+                  double acceptedPerSecond,
+                  double commandMicrosAvg,
+                  double ackP50Ms,
+                  double ackP99Ms,
+                  double ackMaxMs,
+                  double storeOpsPerBid,
+                  double busMessagesPerBid,
+                  double resyncsPerBid,
+                  double chatMessagesPerBid,
+                  long logs) { }
+
+    BidSimulator(final AuctionPlugin plugin, final CommandSender sender, final Settings settings) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.settings = settings;
+        this.store = new MemoryAuctionStore(plugin.getLogger(), t -> Bukkit.getScheduler().runTask(plugin, t));
+        this.auctionWriter = new AuctionWriter(plugin, store);
+    }
+
+    void start() {
+        for (int i = 0; i < settings.bidders(); i += 1) {
+            bidders.add(createBidder(i));
+        }
+        Inventory inventory = Bukkit.createInventory(null, 9);
+        inventory.addItem(new ItemStack(Material.DIAMOND, 64));
+        final Duration duration = Duration.ofSeconds(settings.seconds() + 60L);
+        packed = PackedInventory.of(inventory);
+        blob = SQLInventoryBlob.of(packed);
+        SQLAuction row = new SQLAuction(new UUID(0L, 1L), START_PRICE, blob, InventorySummary.of(packed), duration);
+        Instant now = Instant.now();
+        row.setState(AuctionState.ACTIVE);
+        row.setStartTime(Date.from(now));
+        row.setEndTime(Date.from(now.plus(duration)));
+        row.setAnnouncedTime(Date.from(now));
+        store.addAuction(row).thenAccept(this::onAuctionAdded);
+    }
+
+    private void onAuctionAdded(SQLAuction row) {
+        cacheBlob();
+        InventoryBlobs.prepare(row.getInventoryHash(), () -> {
+                manager = new Auction(plugin, row, this);
+                manager.computeItems();
+                for (int i = 0; i < settings.followers(); i += 1) {
+                    SQLAuction copy = Json.deserialize(Json.serialize(row), SQLAuction.class, () -> null);
+                    followers.add(new Auction(plugin, copy, this));
+                }
+                storeOpsBefore = store.getOperationCount();
+                startNanos = System.nanoTime();
+                task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+                sender.sendMessage(text("Simulating " + settings, YELLOW));
+            });
+    }
+
+    /**
+     * Put the blob back in the cache before it is prepared.  It may
+     * have been evicted, and preparing would then look for it in the
+     * database, where it does not exist.
+     */
+    private void cacheBlob() {
+        InventoryCache.put(blob.getHash(), packed, blob.getLength());
+    }
+
+    void stop() {
+        if (task == null) return;
+        task.cancel();
+        task = null;
+        auctionWriter.disable();
+        store.close();
+    }
+
+    boolean isRunning() {
+        return task != null;
+    }
+
+    private void tick() {
+        if (ticks < settings.seconds() * 20) {
+            ticks += 1;
+            bidCredit += (double) settings.bidsPerSecond() / 20.0;
+            while (bidCredit >= 1.0) {
+                bidCredit -= 1.0;
+                bid();
+            }
+            if (logQueue.size() >= LOG_BATCH || ticks % 20 == 0) flushLogs();
+            if (ticks == settings.seconds() * 20) endNanos = System.nanoTime();
+            return;
+        }
+        // Wait for the outstanding acknowledgements
+        flushLogs();
+        drainTicks += 1;
+        if (saved + failed < accepted && drainTicks < DRAIN_TICKS) return;
+        report();
+        stop();
+    }
+
+    /**
+     * One bid by a random bidder.  Most bid a little more than the
+     * price, some exactly the price, which gets rejected.
+     */
+    private void bid() {
+        RemotePlayer player = bidders.get(random.nextInt(bidders.size()));
+        final double price = manager.getAuctionRow().getCurrentPrice();
+        final double amount = random.nextInt(10) == 0
+            ? price
+            : Math.floor(price + 1.0 + random.nextDouble() * price * 0.05);
+        final long version = manager.getAuctionRow().getVersion();
+        attempted += 1;
+        final long start = System.nanoTime();
+        try {
+            manager.bidCommand(player, amount);
+        } catch (CommandWarn warn) {
+            // Rejected
+        }
+        commandNanos += System.nanoTime() - start;
+        if (manager.getAuctionRow().getVersion() != version) accepted += 1;
+    }
+
+    private void flushLogs() {
+        if (logQueue.isEmpty()) return;
+        store.insertLogs(logQueue);
+        logQueue = new ArrayList<>();
+    }
+
+    private void report() {
+        final long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        final double bids = Math.max(1L, accepted);
+        final double wallSeconds = (double) (endNanos - startNanos) / 1e9;
+        Report report = new Report("bidstorm",
+                                   System.currentTimeMillis(),
+                                   settings,
+                                   wallSeconds,
+                                   attempted,
+                                   accepted,
+                                   attempted - accepted,
+                                   saved,
+                                   failed,
+                                   (double) accepted / wallSeconds,
+                                   attempted > 0 ? (double) commandNanos / (double) attempted / 1e3 : 0.0,
+                                   percentileMillis(sorted, 0.5),
+                                   percentileMillis(sorted, 0.99),
+                                   sorted.length > 0 ? (double) sorted[sorted.length - 1] / 1e6 : 0.0,
+                                   (double) (store.getOperationCount() - storeOpsBefore) / bids,
+                                   (double) busMessages / bids,
+                                   (double) resyncs / bids,
+                                   (double) chatMessages / bids,
+                                   logs);
+        final String json = Json.serialize(report);
+        File folder = new File(plugin.getDataFolder(), "simulations");
+        File file = new File(folder, "bidstorm-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+        try {
+            folder.mkdirs();
+            Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.SEVERE, "Writing " + file, ioe);
+        }
+        sender.sendMessage(text("Simulation done: " + file.getName(), AQUA));
+        sender.sendMessage(text("accepted " + accepted + "/" + attempted
+                                + " rate " + String.format("%.1f", report.acceptedPerSecond()) + "/s"
+                                + " ack p50/p99 " + String.format("%.2f/%.2f", report.ackP50Ms(), report.ackP99Ms()) + "ms"
+                                + " storeOps/bid " + String.format("%.2f", report.storeOpsPerBid())
+                                + " bus/bid " + String.format("%.2f", report.busMessagesPerBid())
+                                + " resyncs/bid " + String.format("%.3f", report.resyncsPerBid()), WHITE));
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0.0;
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return (double) sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Create a bidder who exists nowhere but here.  Any method of
+     * RemotePlayer which is not needed by the auction returns the
+     * default value of its type.
+     */
+    private RemotePlayer createBidder(int index) {
+        final UUID uuid = new UUID(1L, index);
+        final String name = "Bidder" + index;
+        return (RemotePlayer) Proxy.newProxyInstance(RemotePlayer.class.getClassLoader(), new Class<?>[] {RemotePlayer.class}, (proxy, method, args) -> {
+                return switch (method.getName()) {
+                case "getUniqueId" -> uuid;
+                case "getName" -> name;
+                case "getOriginServer" -> NetworkServer.current();
+                case "sendMessage" -> {
+                    chatMessages += 1;
+                    yield null;
+                }
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> uuid.hashCode();
+                case "toString" -> name;
+                default -> defaultValue(method.getReturnType());
+                };
+            });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0.0;
+    }
+
+    // AuctionHost
+
+    @Override
+    public AuctionStore getStore() {
+        return store;
+    }
+
+    @Override
+    public AuctionWriter getAuctionWriter() {
+        return auctionWriter;
+    }
+
+    @Override
+    public void addLog(SQLLog log) {
+        logs += 1;
+        logQueue.add(log);
+    }
+
+    @Override
+    public boolean hasMoney(UUID uuid, double amount) {
+        return true;
+    }
+
+    @Override
+    public boolean takeMoney(UUID uuid, double amount, String comment) {
+        return true;
+    }
+
+    @Override
+    public void giveMoney(UUID uuid, double amount, String comment) { }
+
+    @Override
+    public boolean hasPermission(UUID uuid, String permission) {
+        return true;
+    }
+
+    @Override
+    public Collection<? extends RemotePlayer> getRemotePlayers() {
+        return bidders;
+    }
+
+    @Override
+    public void sendMessage(UUID uuid, Component message) {
+        chatMessages += 1;
+    }
+
+    /**
+     * The fake bus.  Every follower gets its own copy of each update,
+     * as it would over the network.
+     */
+    @Override
+    public void broadcast(String channel, String payload) {
+        busMessages += 1;
+        if (!channel.equals(Auctions.CONNECT_UPDATE)) return;
+        for (Auction follower : followers) {
+            AuctionUpdate update = Json.deserialize(payload, AuctionUpdate.class, () -> null);
+            if (update == null) continue;
+            if (!follower.applyUpdate(update)) resyncs += 1;
+        }
+    }
+
+    @Override
+    public void scheduleReload(Auction auction) {
+        Bukkit.getScheduler().runTask(plugin, () -> {
+                cacheBlob();
+                auction.load();
+            });
+    }
+
+    @Override
+    public void indexPlayer(Auction auction, SQLPlayerAuction row) { }
+
+    @Override
+    public void reindexPlayers(Auction auction, List<SQLPlayerAuction> oldRows) { }
+
+    @Override
+    public void invalidatePlayer(UUID uuid) { }
+
+    @Override
+    public void invalidateAuction(Auction auction) { }
+
+    @Override
+    public void scheduleDeadlines(Auction auction) { }
+
+    @Override
+    public void removeAuction(Auction auction) { }
+
+    @Override
+    public void onDeliveryCreated(UUID uuid) { }
+
+    @Override
+    public void onLoaded(Auction auction, MetricEvents.Load event, long nanos) { }
+
+    @Override
+    public void onItemsComputed(MetricEvents.ComputeItems event, long nanos) { }
+
+    @Override
+    public void onAnnounce(MetricEvents.Announce event, long nanos) { }
+
+    @Override
+    public void onBidSaved(MetricEvents.Bid event, long nanos) {
+        if (event.success) {
+            saved += 1;
+        } else {
+            failed += 1;
+        }
+        if (latencyCount == latencies.length) latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        latencies[latencyCount++] = nanos;
+    }
+
+    @Override
+    public boolean manages(Auction auction) {
+        return auction == manager;
+    }
+
+    @Override
+    public void log(String msg) { }
+
+    @Override
+    public void warn(String msg) {
+        plugin.getLogger().warning("[sim] " + msg);
+    }
+}
@@ -0,0 +1,64 @@
+package com.cavetale.auction;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Priority queue of tasks keyed on absolute deadlines in epoch
+ * milliseconds.  Polling it when nothing is due costs one peek.
+ * Cancelling a deadline removes it from the queue right away, so the
+ * size only counts live deadlines.
+ */
+public final class DeadlineQueue {
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>(Comparator.comparingLong(Deadline::getTime));
+    private long fired;
+
+    public final class Deadline {
+        private final long time;
+        private final Runnable task;
+
+        private Deadline(final long time, final Runnable task) {
+            this.time = time;
+            this.task = task;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Remove this deadline unless it already fired.  This is
+         * linear in the size of the queue, which holds two deadlines
+         * per auction.
+         */
+        public void cancel() {
+            queue.remove(this);
+        }
+    }
+
+    public Deadline schedule(long time, Runnable task) {
+        Deadline deadline = new Deadline(time, task);
+        queue.add(deadline);
+        return deadline;
+    }
+
+    /**
+     * Run all tasks which are due at the given time, in order of
+     * their deadlines.  Tasks may schedule new deadlines.
+     */
+    public void runDue(long now) {
+        while (!queue.isEmpty() && queue.peek().time <= now) {
+            Deadline deadline = queue.poll();
+            fired += 1;
+            deadline.task.run();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getFired() {
+        return fired;
+    }
+}
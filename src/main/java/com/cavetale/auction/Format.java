@@ -2,11 +2,14 @@ package com.cavetale.auction;
 
 import com.cavetale.core.font.Unicode;
 import com.cavetale.mytems.item.coin.Coin;
-import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import static net.kyori.adventure.text.Component.join;
@@ -18,9 +21,25 @@ import static net.kyori.adventure.text.event.HoverEvent.showText;
 import static net.kyori.adventure.text.format.NamedTextColor.*;
 import static net.kyori.adventure.text.format.TextDecoration.*;
 
+/**
+ * Shared rendering of money, dates and durations.  Everything here
+ * may be called from any thread.
+ */
 public final class Format {
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy MMM dd HH:mm:ss");
-    public static final SimpleDateFormat BRIEF_DATE_FORMAT = new SimpleDateFormat("yy/MM/d");
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyy MMM dd HH:mm").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter BRIEF_DATE_FORMAT = DateTimeFormatter.ofPattern("yy/MM/d").withZone(ZoneId.systemDefault());
+    private static final int DURATION_CACHE_SIZE = 1024;
+    private static volatile CachedMinute cachedMinute = new CachedMinute(Long.MIN_VALUE, "");
+    /**
+     * Rendered durations by remaining seconds and darkness.  An entry
+     * is only valid during the second in which it was rendered,
+     * because the hover shows the absolute end time.
+     */
+    private static final Map<Long, CachedDuration> DURATION_CACHE = new ConcurrentHashMap<>();
+
+    private record CachedMinute(long minute, String prefix) { }
+
+    private record CachedDuration(long second, Component component) { }
 
     public static TextColor invert(TextColor color, boolean dark) {
         return dark
@@ -30,11 +49,45 @@ public final class Format {
             : color;
     }
 
+    /**
+     * Format a date down to the second.  Most dates shown at once
+     * share their minute, so the formatted minute is reused and only
+     * the seconds are appended.
+     */
     public static String date(Date date) {
-        return DATE_FORMAT.format(date);
+        final long millis = date.getTime();
+        final long minute = Math.floorDiv(millis, 60_000L);
+        CachedMinute cached = cachedMinute;
+        if (cached.minute() != minute) {
+            cached = new CachedMinute(minute, MINUTE_FORMAT.format(Instant.ofEpochMilli(minute * 60_000L)));
+            cachedMinute = cached;
+        }
+        final long second = Math.floorMod(millis, 60_000L) / 1000L;
+        return cached.prefix() + (second < 10L ? ":0" : ":") + second;
     }
 
+    public static String briefDate(Date date) {
+        return BRIEF_DATE_FORMAT.format(date.toInstant());
+    }
+
+    /**
+     * Render a remaining duration.  All viewers who see the same
+     * remaining seconds within the same second share one component.
+     */
     public static Component duration(Duration duration, boolean dark) {
+        final long now = System.currentTimeMillis();
+        final long nowSecond = now / 1000L;
+        final long seconds = Math.max(0L, duration.toSeconds());
+        final long key = (seconds << 1) | (dark ? 1L : 0L);
+        CachedDuration cached = DURATION_CACHE.get(key);
+        if (cached != null && cached.second() == nowSecond) return cached.component();
+        if (DURATION_CACHE.size() >= DURATION_CACHE_SIZE) DURATION_CACHE.clear();
+        Component result = renderDuration(Duration.ofSeconds(seconds), dark, now);
+        DURATION_CACHE.put(key, new CachedDuration(nowSecond, result));
+        return result;
+    }
+
+    private static Component renderDuration(Duration duration, boolean dark, long now) {
         final long seconds = duration.toSeconds();
         final long minutes = duration.toMinutes();
         final long hours = duration.toHours();
@@ -53,10 +106,10 @@ public final class Format {
             list.add(text(minutes % 60));
             list.add(text(Unicode.SMALLM.character, gray));
         }
-        list.add(text(Math.max(0, seconds % 60)));
+        list.add(text(seconds % 60));
         list.add(text(Unicode.SMALLS.character, gray));
         Component title = join(noSeparators(), list).color(invert(AQUA, dark));
-        Date then = Date.from(Instant.now().plus(duration));
+        Date then = new Date(now + duration.toMillis());
         return title
             .hoverEvent(showText(join(separator(newline()),
                                       join(noSeparators(), list).color(YELLOW),
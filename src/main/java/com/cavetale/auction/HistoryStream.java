@@ -0,0 +1,139 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLAuctionSummary;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Stream the auction history to an admin.  Summary rows are fetched
+ * in chunks, ordered by time and id, with a keyset cursor, and sent
+ * at a bounded number of lines per tick.  The next chunk is fetched
+ * while the previous one is still being sent.
+ */
+@RequiredArgsConstructor
+final class HistoryStream {
+    private static final int CHUNK_SIZE = 50;
+    private static final int LINES_PER_TICK = 4;
+    private final AuctionPlugin plugin;
+    private final CommandSender sender;
+    private final Filter filter;
+    private final Function<SQLAuctionSummary, Component> render;
+    /** Called once when the stream stops, for whatever reason. */
+    private final Consumer<HistoryStream> onStop;
+    private final ArrayDeque<SQLAuctionSummary> buffer = new ArrayDeque<>();
+    private BukkitTask task;
+    private Date cursorTime;
+    private int cursorId;
+    private boolean fetching;
+    private boolean exhausted;
+    private int sent;
+
+    /**
+     * Each filter maps to one of the indexed columns of the auctions
+     * table.  With a state, the stream follows the (state, endTime)
+     * key and the date range applies to the end time.  Otherwise it
+     * follows (owner, createdTime), or createdTime, and the date
+     * range applies to the creation time.
+     */
+    record Filter(AuctionState state, UUID owner, Date from, Date to) {
+        boolean byEndTime() {
+            return state != null && owner == null;
+        }
+
+        String timeColumn() {
+            return byEndTime() ? "endTime" : "createdTime";
+        }
+
+        Date timeOf(SQLAuctionSummary row) {
+            return byEndTime() ? row.getEndTime() : row.getCreatedTime();
+        }
+    }
+
+    void start() {
+        cursorTime = filter.from() != null ? filter.from() : new Date(0L);
+        cursorId = 0;
+        fetch();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    void stop() {
+        if (task == null) return;
+        task.cancel();
+        task = null;
+        buffer.clear();
+        exhausted = true;
+        onStop.accept(this);
+    }
+
+    boolean isRunning() {
+        return task != null;
+    }
+
+    private void fetch() {
+        fetching = true;
+        var find = plugin.database.find(SQLAuctionSummary.class);
+        if (filter.state() != null) find.eq("state", filter.state());
+        if (filter.owner() != null) find.eq("owner", filter.owner());
+        if (filter.to() != null) find.lt(filter.timeColumn(), filter.to());
+        find.gte(filter.timeColumn(), cursorTime)
+            .orderByAscending(filter.timeColumn())
+            .orderByAscending("id")
+            .limit(CHUNK_SIZE)
+            .findListAsync(this::onFetch);
+    }
+
+    private void onFetch(List<SQLAuctionSummary> rows) {
+        fetching = false;
+        if (task == null) return;
+        int added = 0;
+        for (SQLAuctionSummary row : rows) {
+            Date time = filter.timeOf(row);
+            if (time.getTime() == cursorTime.getTime() && row.getId() <= cursorId) continue;
+            buffer.add(row);
+            added += 1;
+        }
+        if (!rows.isEmpty()) {
+            SQLAuctionSummary last = rows.get(rows.size() - 1);
+            cursorTime = filter.timeOf(last);
+            cursorId = last.getId();
+        }
+        if (rows.size() < CHUNK_SIZE) {
+            exhausted = true;
+        } else if (added == 0) {
+            // A whole chunk shares the cursor time, so the time
+            // predicate cannot move past it.
+            sender.sendMessage(text("History stopped: too many auctions at " + Format.date(cursorTime), RED));
+            exhausted = true;
+        }
+    }
+
+    private void tick() {
+        if (sender instanceof Player player && !player.isOnline()) {
+            stop();
+            return;
+        }
+        for (int i = 0; i < LINES_PER_TICK && !buffer.isEmpty(); i += 1) {
+            sender.sendMessage(render.apply(buffer.poll()));
+            sent += 1;
+        }
+        if (buffer.size() < CHUNK_SIZE / 2 && !fetching && !exhausted) {
+            fetch();
+        }
+        if (buffer.isEmpty() && !fetching && exhausted) {
+            sender.sendMessage(text("History done: " + sent + " auctions", AQUA));
+            stop();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.AuctionStore;
+import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import com.cavetale.core.command.RemotePlayer;
+import com.cavetale.core.connect.Connect;
+import com.cavetale.core.connect.ServerGroup;
+import com.cavetale.core.money.Money;
+import com.cavetale.core.perm.Perm;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import net.kyori.adventure.text.Component;
+
+@RequiredArgsConstructor
+final class LiveAuctionHost implements AuctionHost {
+    private final AuctionPlugin plugin;
+
+    @Override
+    public AuctionStore getStore() {
+        return plugin.store;
+    }
+
+    @Override
+    public AuctionWriter getAuctionWriter() {
+        return plugin.auctionWriter;
+    }
+
+    @Override
+    public void addLog(SQLLog log) {
+        plugin.logWriter.add(log);
+    }
+
+    @Override
+    public boolean hasMoney(UUID uuid, double amount) {
+        return Money.get().has(uuid, amount);
+    }
+
+    @Override
+    public boolean takeMoney(UUID uuid, double amount, String comment) {
+        return Money.get().take(uuid, amount, plugin, comment);
+    }
+
+    @Override
+    public void giveMoney(UUID uuid, double amount, String comment) {
+        Money.get().give(uuid, amount, plugin, comment);
+    }
+
+    @Override
+    public boolean hasPermission(UUID uuid, String permission) {
+        return Perm.get().has(uuid, permission);
+    }
+
+    @Override
+    public Collection<? extends RemotePlayer> getRemotePlayers() {
+        return Connect.get().getRemotePlayers();
+    }
+
+    @Override
+    public void sendMessage(UUID uuid, Component message) {
+        RemotePlayer remote = Connect.get().getRemotePlayer(uuid);
+        if (remote != null) remote.sendMessage(message);
+    }
+
+    @Override
+    public void broadcast(String channel, String payload) {
+        Connect.get().broadcastMessage(ServerGroup.current(), channel, payload);
+    }
+
+    @Override
+    public void scheduleReload(Auction auction) {
+        plugin.auctions.scheduleReload(auction);
+    }
+
+    @Override
+    public void indexPlayer(Auction auction, SQLPlayerAuction row) {
+        plugin.auctions.indexPlayer(auction, row);
+    }
+
+    @Override
+    public void reindexPlayers(Auction auction, List<SQLPlayerAuction> oldRows) {
+        plugin.auctions.reindexPlayers(auction, oldRows);
+    }
+
+    @Override
+    public void invalidatePlayer(UUID uuid) {
+        plugin.auctions.invalidatePlayer(uuid);
+    }
+
+    @Override
+    public void invalidateAuction(Auction auction) {
+        plugin.auctions.invalidateAuction(auction);
+    }
+
+    @Override
+    public void scheduleDeadlines(Auction auction) {
+        plugin.auctions.scheduleDeadlines(auction);
+    }
+
+    @Override
+    public void removeAuction(Auction auction) {
+        plugin.auctions.removeAuction(auction.getId());
+    }
+
+    @Override
+    public void onDeliveryCreated(UUID uuid) {
+        plugin.auctions.onDeliveryCreated(uuid);
+    }
+
+    @Override
+    public void onLoaded(Auction auction, MetricEvents.Load event, long nanos) {
+        plugin.metrics.time(Metrics.LOAD, nanos);
+        if (event.shouldCommit()) event.commit();
+        plugin.auctions.onAuctionLoaded(auction);
+    }
+
+    @Override
+    public void onItemsComputed(MetricEvents.ComputeItems event, long nanos) {
+        plugin.metrics.time(Metrics.COMPUTE_ITEMS, nanos);
+        if (event.shouldCommit()) event.commit();
+    }
+
+    @Override
+    public void onAnnounce(MetricEvents.Announce event, long nanos) {
+        plugin.auctions.onAnnounce(event.recipients, event.renders, nanos);
+        if (event.shouldCommit()) event.commit();
+    }
+
+    @Override
+    public void onBidSaved(MetricEvents.Bid event, long nanos) {
+        plugin.metrics.time(Metrics.BID, nanos);
+        plugin.metrics.count(event.success ? "bid.saved" : "bid.failed", 1L);
+        if (event.shouldCommit()) event.commit();
+    }
+
+    @Override
+    public boolean manages(Auction auction) {
+        return plugin.auctions.manages(auction.getId());
+    }
+
+    @Override
+    public void log(String msg) {
+        plugin.getLogger().info(msg);
+    }
+
+    @Override
+    public void warn(String msg) {
+        plugin.getLogger().warning(msg);
+    }
+}
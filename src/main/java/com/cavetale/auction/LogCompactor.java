@@ -0,0 +1,228 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLAuctionSummary;
+import com.cavetale.auction.sql.SQLLog;
+import com.cavetale.auction.sql.SQLLogSummary;
+import com.cavetale.core.util.Json;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+
+/**
+ * Roll up the logs of long finished auctions.  Each auction gets one
+ * SQLLogSummary, its raw logs are appended to a gzipped json lines
+ * file in the log-archive folder and then deleted from the logs
+ * table.
+ *
+ * Only the primary manager runs this, once an hour.  Each batch is
+ * its own task on the database thread, so other queries get their
+ * turn in between.  Auctions are visited in the order of their end
+ * time, starting after the newest one already summarized.  Auctions
+ * which were cancelled before they started have no end time and are
+ * visited in the order of their creation instead.
+ */
+@RequiredArgsConstructor
+public final class LogCompactor {
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_AUCTIONS_PER_RUN = 1000;
+    private static final Date NEVER = new Date(0L);
+    private final AuctionPlugin plugin;
+    private boolean running;
+    private int lastCount;
+    // Run state, handed between the main and database thread
+    private Date cutoff;
+    private File folder;
+    private boolean cancelledPhase;
+    private Date since;
+    /**
+     * Creation time of the last never started auction visited, kept
+     * between runs.
+     */
+    private Date cancelledSince = NEVER;
+    private int count;
+
+    protected void enable() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::start, 20L * 60L, 20L * 60L * 60L);
+    }
+
+    private int getRetentionDays() {
+        return plugin.getConfig().getInt("log-retention-days", 30);
+    }
+
+    protected void start() {
+        if (running || !plugin.auctions.isPrimaryManager()) return;
+        final int days = getRetentionDays();
+        if (days <= 0) return;
+        running = true;
+        cutoff = new Date(System.currentTimeMillis() - days * 24L * 60L * 60L * 1000L);
+        folder = new File(plugin.getDataFolder(), "log-archive");
+        cancelledPhase = false;
+        since = null;
+        count = 0;
+        nextBatch();
+    }
+
+    private void nextBatch() {
+        plugin.database.scheduleAsyncTask(() -> {
+                boolean more = false;
+                try {
+                    more = runBatch();
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.SEVERE, "Log compaction", e);
+                }
+                final boolean theMore = more;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (theMore && count < MAX_AUCTIONS_PER_RUN) {
+                            nextBatch();
+                        } else {
+                            finish();
+                        }
+                    });
+            });
+    }
+
+    private void finish() {
+        running = false;
+        lastCount = count;
+        if (count > 0) plugin.getLogger().info("Compacted logs of " + count + " auctions");
+    }
+
+    /**
+     * Compact one batch of finished auctions from before the cutoff.
+     * This runs on the database thread.
+     * @return true if there may be more
+     */
+    private boolean runBatch() throws IOException {
+        if (!cancelledPhase) {
+            if (since == null) {
+                List<SQLLogSummary> newest = plugin.database.find(SQLLogSummary.class)
+                    .orderByDescending("auctionEndTime")
+                    .limit(1)
+                    .findList();
+                since = newest.isEmpty() ? NEVER : newest.get(0).getAuctionEndTime();
+            }
+            List<SQLAuctionSummary> auctions = plugin.database.find(SQLAuctionSummary.class)
+                .in("state", List.of(AuctionState.ENDED, AuctionState.CANCELLED))
+                .gte("endTime", since)
+                .lt("endTime", cutoff)
+                .orderByAscending("endTime")
+                .limit(BATCH_SIZE)
+                .findList();
+            compactAll(auctions);
+            if (auctions.size() == BATCH_SIZE) {
+                since = advance(since, auctions.get(auctions.size() - 1).getEndTime());
+            } else {
+                cancelledPhase = true;
+            }
+            return true;
+        }
+        List<SQLAuctionSummary> auctions = plugin.database.find(SQLAuctionSummary.class)
+            .eq("state", AuctionState.CANCELLED)
+            .eq("endTime", NEVER)
+            .gte("createdTime", cancelledSince)
+            .lt("createdTime", cutoff)
+            .orderByAscending("createdTime")
+            .limit(BATCH_SIZE)
+            .findList();
+        compactAll(auctions);
+        if (auctions.size() < BATCH_SIZE) return false;
+        cancelledSince = advance(cancelledSince, auctions.get(auctions.size() - 1).getCreatedTime());
+        return true;
+    }
+
+    /**
+     * Move a keyset position to the last time of a full batch.
+     */
+    private static Date advance(Date from, Date last) {
+        // A full batch with the same time, all of which are
+        // summarized by now.
+        return last.equals(from)
+            ? new Date(last.getTime() + 1L)
+            : last;
+    }
+
+    private void compactAll(List<SQLAuctionSummary> auctions) throws IOException {
+        if (auctions.isEmpty()) return;
+        List<Integer> ids = new ArrayList<>(auctions.size());
+        for (SQLAuctionSummary auction : auctions) ids.add(auction.getId());
+        Set<Integer> done = new HashSet<>(plugin.database.find(SQLLogSummary.class)
+                                          .in("auctionId", ids)
+                                          .findValues("auctionId", Integer.class));
+        for (SQLAuctionSummary auction : auctions) {
+            if (done.contains(auction.getId())) continue;
+            compact(auction, folder);
+            count += 1;
+        }
+    }
+
+    private void compact(SQLAuctionSummary auction, File folder) throws IOException {
+        List<SQLLog> logs = plugin.database.find(SQLLog.class)
+            .eq("auctionId", auction.getId())
+            .orderByAscending("time")
+            .findList();
+        SQLLogSummary summary = new SQLLogSummary();
+        summary.setAuctionId(auction.getId());
+        summary.setAuctionEndTime(auction.getEndTime());
+        summary.setLogCount(logs.size());
+        summary.setFinalPrice(auction.getCurrentPrice());
+        summary.setWinner(auction.getWinner());
+        Set<UUID> bidders = new HashSet<>();
+        for (SQLLog log : logs) {
+            if (log.getType() == LogType.BID) {
+                summary.setBidCount(summary.getBidCount() + 1);
+                if (log.getPlayer() != null) bidders.add(log.getPlayer());
+            }
+        }
+        summary.setBidders(bidders.size());
+        if (!logs.isEmpty()) {
+            summary.setFirstTime(logs.get(0).getTime());
+            summary.setLastTime(logs.get(logs.size() - 1).getTime());
+        }
+        summary.setCreatedTime(new Date());
+        summary.setArchive(logs.isEmpty() ? "" : archive(logs, folder));
+        // The summary goes in before the logs go out, so a crash in
+        // between leaves both instead of neither.
+        plugin.database.insertIgnore(summary);
+        if (!logs.isEmpty()) {
+            plugin.database.find(SQLLog.class).eq("auctionId", auction.getId()).delete();
+        }
+    }
+
+    /**
+     * Append the logs to this month's archive.  Each call adds one
+     * gzip member, which readers see as one continuous stream.
+     * @return the file name
+     */
+    private String archive(List<SQLLog> logs, File folder) throws IOException {
+        folder.mkdirs();
+        String name = "logs-" + new SimpleDateFormat("yyyy-MM").format(new Date()) + ".jsonl.gz";
+        File file = new File(folder, name);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file, true)), StandardCharsets.UTF_8)) {
+            for (SQLLog log : logs) {
+                writer.write(Json.serialize(log));
+                writer.write("\n");
+            }
+        }
+        return name;
+    }
+
+    public String debug() {
+        return "running=" + running
+            + " retention=" + getRetentionDays() + "d"
+            + " lastRun=" + lastCount;
+    }
+}
@@ -16,12 +16,10 @@ public enum LogType {
     DELIVERED;
 
     protected void log(SQLAuction auc, UUID uuid, double amount) {
-        SQLLog log = new SQLLog(auc, this, uuid, amount);
-        auctionPlugin().getDatabase().insertAsync(log, null);
+        auctionPlugin().logWriter.add(new SQLLog(auc, this, uuid, amount));
     }
 
     protected void log(int auctionId, UUID uuid, double amount) {
-        SQLLog log = new SQLLog(auctionId, this, uuid, amount);
-        auctionPlugin().getDatabase().insertAsync(log, null);
+        auctionPlugin().logWriter.add(new SQLLog(auctionId, this, uuid, amount));
     }
 }
@@ -0,0 +1,104 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLLog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+
+/**
+ * Buffer log rows and insert them many at a time.  The queue is
+ * flushed once it holds MAX_BATCH rows, or once its oldest row is
+ * FLUSH_INTERVAL_MILLIS old.  Disabling inserts the rest right away
+ * on the main thread, so no log is lost on shutdown.  Flushes still
+ * in flight are finished by the store when it closes.
+ *
+ * Only the main thread touches the queue.
+ */
+@RequiredArgsConstructor
+public final class LogWriter {
+    private static final int MAX_BATCH = 100;
+    private static final long FLUSH_INTERVAL_MILLIS = 2000L;
+    private final AuctionPlugin plugin;
+    private List<SQLLog> queue = new ArrayList<>();
+    private long oldest;
+    // Statistics
+    private int peakDepth;
+    private int inFlight;
+    private long rows;
+    private long flushes;
+    private long failures;
+    private long lastLatency;
+    private long maxLatency;
+    private long totalLatency;
+
+    protected void enable() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    protected void disable() {
+        if (queue.isEmpty()) return;
+        List<SQLLog> list = queue;
+        queue = new ArrayList<>();
+        // The store completes its futures on the main thread, which
+        // is not going to run them anymore, so insert directly.
+        try {
+            plugin.database.insert(list);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Inserting " + list.size() + " logs on disable", e);
+        }
+    }
+
+    public void add(SQLLog log) {
+        if (queue.isEmpty()) oldest = System.currentTimeMillis();
+        queue.add(log);
+        peakDepth = Math.max(peakDepth, queue.size());
+        if (queue.size() >= MAX_BATCH) flush();
+    }
+
+    private void tick() {
+        if (!queue.isEmpty() && System.currentTimeMillis() - oldest >= FLUSH_INTERVAL_MILLIS) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        final List<SQLLog> list = queue;
+        queue = new ArrayList<>();
+        final long start = System.nanoTime();
+        inFlight += list.size();
+        flushes += 1;
+        plugin.store.insertLogs(list)
+            .whenComplete((count, error) -> onFlushed(list.size(), error == null, System.nanoTime() - start));
+    }
+
+    private void onFlushed(int count, boolean success, long latency) {
+        inFlight -= count;
+        if (success) {
+            rows += count;
+        } else {
+            failures += 1;
+        }
+        lastLatency = latency;
+        maxLatency = Math.max(maxLatency, latency);
+        totalLatency += latency;
+    }
+
+    public int getQueueDepth() {
+        return queue.size() + inFlight;
+    }
+
+    public String debug() {
+        return "depth=" + queue.size()
+            + " inFlight=" + inFlight
+            + " peak=" + peakDepth
+            + " rows=" + rows
+            + " flushes=" + flushes
+            + " failures=" + failures
+            + " latency(last/avg/max)="
+            + (lastLatency / 1_000_000L) + "/"
+            + (flushes > 0 ? totalLatency / flushes / 1_000_000L : 0L) + "/"
+            + (maxLatency / 1_000_000L) + "ms";
+    }
+}
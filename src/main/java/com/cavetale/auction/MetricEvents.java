@@ -0,0 +1,60 @@
+package com.cavetale.auction;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR events for the spans which Metrics times.  Events are cheap
+ * when no recording is running, so they are always created.
+ */
+final class MetricEvents {
+    @Name("cavetale.auction.Bid") @Label("Auction Bid") @Category({"Cavetale", "Auction"})
+    static final class Bid extends Event {
+        @Label("Auction Id") int auctionId;
+        @Label("Amount") double amount;
+        @Label("Saved") boolean success;
+    }
+
+    @Name("cavetale.auction.Load") @Label("Auction Load") @Category({"Cavetale", "Auction"})
+    static final class Load extends Event {
+        @Label("Auction Id") int auctionId;
+        @Label("Players") int players;
+    }
+
+    @Name("cavetale.auction.ComputeItems") @Label("Auction Compute Items") @Category({"Cavetale", "Auction"})
+    static final class ComputeItems extends Event {
+        @Label("Auction Id") int auctionId;
+        @Label("Item Count") int itemCount;
+    }
+
+    @Name("cavetale.auction.Announce") @Label("Auction Announce") @Category({"Cavetale", "Auction"})
+    static final class Announce extends Event {
+        @Label("Auction Id") int auctionId;
+        @Label("Recipients") int recipients;
+        @Label("Renders") int renders;
+    }
+
+    @Name("cavetale.auction.Hud") @Label("Auction Hud") @Category({"Cavetale", "Auction"})
+    @Threshold("1 ms")
+    static final class Hud extends Event {
+        @Label("Auctions") int auctions;
+    }
+
+    @Name("cavetale.auction.DbLag") @Label("Auction Database Lag") @Category({"Cavetale", "Auction"})
+    static final class DbLag extends Event {
+        @Label("Queue") @Timespan long queue;
+        @Label("Callback") @Timespan long callback;
+    }
+
+    @Name("cavetale.auction.StoreLag") @Label("Auction Store Lag") @Category({"Cavetale", "Auction"})
+    static final class StoreLag extends Event {
+        @Label("Queue") @Timespan long queue;
+        @Label("Callback") @Timespan long callback;
+    }
+
+    private MetricEvents() { }
+}
@@ -0,0 +1,216 @@
+package com.cavetale.auction;
+
+import com.cavetale.core.util.Json;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+
+/**
+ * Timers and counters of the hot paths.  Timers keep a coarse
+ * histogram, which is enough to tell the median from the outliers.
+ * The same spans are committed as JFR events, see MetricEvents.
+ *
+ * The lag of the auction store, which serves the bids and loads, and
+ * of the database thread, which serves everything else, is probed
+ * periodically: once from submitting an operation until it starts,
+ * and once from there until its callback runs on the main thread.
+ *
+ * A snapshot is written to metrics.json in the data folder every
+ * few minutes and on disable.  Only the main thread records.
+ */
+@RequiredArgsConstructor
+public final class Metrics {
+    public static final String BID = "bid";
+    public static final String LOAD = "load";
+    public static final String COMPUTE_ITEMS = "computeItems";
+    public static final String ANNOUNCE = "announce";
+    public static final String HUD = "hud";
+    public static final String DB_QUEUE = "dbQueue";
+    public static final String DB_CALLBACK = "dbCallback";
+    public static final String STORE_QUEUE = "storeQueue";
+    public static final String STORE_CALLBACK = "storeCallback";
+    private static final long PROBE_INTERVAL_TICKS = 20L * 5L;
+    private static final long SNAPSHOT_INTERVAL_TICKS = 20L * 60L * 5L;
+    private final AuctionPlugin plugin;
+    private final Map<String, Timer> timers = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+    private boolean probing;
+    private boolean probingStore;
+
+    protected void enable() {
+        for (String name : List.of(BID, LOAD, COMPUTE_ITEMS, ANNOUNCE, HUD, STORE_QUEUE, STORE_CALLBACK, DB_QUEUE, DB_CALLBACK)) {
+            timers.put(name, new Timer());
+        }
+        Bukkit.getScheduler().runTaskTimer(plugin, this::probe, PROBE_INTERVAL_TICKS, PROBE_INTERVAL_TICKS);
+        Bukkit.getScheduler().runTaskTimer(plugin, this::writeSnapshotAsync, SNAPSHOT_INTERVAL_TICKS, SNAPSHOT_INTERVAL_TICKS);
+    }
+
+    protected void disable() {
+        writeSnapshot(Json.serialize(snapshot()));
+    }
+
+    public void time(String name, long nanos) {
+        timers.computeIfAbsent(name, n -> new Timer()).record(nanos);
+    }
+
+    public void count(String name, long amount) {
+        counters.merge(name, amount, Long::sum);
+    }
+
+    private void probe() {
+        probeStore();
+        probeDatabase();
+    }
+
+    private void probeStore() {
+        if (probingStore) return;
+        probingStore = true;
+        final MetricEvents.StoreLag event = new MetricEvents.StoreLag();
+        event.begin();
+        final long submitted = System.nanoTime();
+        plugin.store.probe().whenComplete((started, error) -> {
+                probingStore = false;
+                if (error != null) return;
+                final long queueNanos = started - submitted;
+                final long callbackNanos = System.nanoTime() - started;
+                time(STORE_QUEUE, queueNanos);
+                time(STORE_CALLBACK, callbackNanos);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.queue = queueNanos;
+                    event.callback = callbackNanos;
+                    event.commit();
+                }
+            });
+    }
+
+    private void probeDatabase() {
+        if (probing) return;
+        probing = true;
+        final MetricEvents.DbLag event = new MetricEvents.DbLag();
+        event.begin();
+        final long submitted = System.nanoTime();
+        plugin.database.scheduleAsyncTask(() -> {
+                final long started = System.nanoTime();
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                        probing = false;
+                        final long queueNanos = started - submitted;
+                        final long callbackNanos = System.nanoTime() - started;
+                        time(DB_QUEUE, queueNanos);
+                        time(DB_CALLBACK, callbackNanos);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.queue = queueNanos;
+                            event.callback = callbackNanos;
+                            event.commit();
+                        }
+                    });
+            });
+    }
+
+    /**
+     * Histogram of durations.  Bucket i counts the durations up to
+     * BOUNDS_MICROS[i], the last bucket counts everything above.
+     */
+    public static final class Timer {
+        private static final long[] BOUNDS_MICROS = {
+            100L, 500L, 1_000L, 5_000L, 10_000L, 50_000L, 100_000L, 500_000L, 1_000_000L,
+        };
+        private final long[] buckets = new long[BOUNDS_MICROS.length + 1];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            final long micros = nanos / 1_000L;
+            int i = 0;
+            while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) i += 1;
+            buckets[i] += 1;
+            count += 1;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        /**
+         * The upper bound of the bucket which holds the given
+         * percentile, or the maximum if that is lower.
+         */
+        double percentileMillis(double percentile) {
+            if (count == 0) return 0.0;
+            final long rank = (long) Math.ceil(percentile * (double) count);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MICROS.length; i += 1) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min((double) BOUNDS_MICROS[i] / 1e3, maxMillis());
+                }
+            }
+            return maxMillis();
+        }
+
+        double averageMillis() {
+            return count > 0 ? (double) totalNanos / (double) count / 1e6 : 0.0;
+        }
+
+        double maxMillis() {
+            return (double) maxNanos / 1e6;
+        }
+
+        TimerSnapshot snapshot(String name) {
+            return new TimerSnapshot(name, count, averageMillis(), percentileMillis(0.5), percentileMillis(0.99), maxMillis());
+        }
+    }
+
+    public record TimerSnapshot(String name, long count, double avgMs, double p50Ms, double p99Ms, double maxMs) {
+        @Override
+        public String toString() {
+            return name
+                + " n=" + count
+                + " avg=" + String.format("%.3f", avgMs)
+                + " p50=" + String.format("%.3f", p50Ms)
+                + " p99=" + String.format("%.3f", p99Ms)
+                + " max=" + String.format("%.3f", maxMs) + "ms";
+        }
+    }
+
+    public record Snapshot(long time, long uptimeSeconds, List<TimerSnapshot> timers, Map<String, Long> counters) { }
+
+    public Snapshot snapshot() {
+        List<TimerSnapshot> list = new ArrayList<>(timers.size());
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            list.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        final long now = System.currentTimeMillis();
+        return new Snapshot(now, (now - startTime) / 1000L, list, new LinkedHashMap<>(counters));
+    }
+
+    private void writeSnapshotAsync() {
+        final String json = Json.serialize(snapshot());
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> writeSnapshot(json));
+    }
+
+    /**
+     * Write via a temporary file, so readers never see a partial
+     * snapshot.
+     */
+    private void writeSnapshot(String json) {
+        File file = new File(plugin.getDataFolder(), "metrics.json");
+        File tmp = new File(plugin.getDataFolder(), "metrics.json.tmp");
+        try {
+            Files.writeString(tmp.toPath(), json, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.SEVERE, "Writing " + file, ioe);
+        }
+    }
+}
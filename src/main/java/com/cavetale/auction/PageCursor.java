@@ -0,0 +1,38 @@
+package com.cavetale.auction;
+
+import com.cavetale.core.command.CommandWarn;
+import java.util.Date;
+
+/**
+ * Position in a list ordered by time and id, both descending.  The
+ * next page starts strictly after the row this cursor points at.  It
+ * is passed around in click commands as "time:id".
+ */
+public record PageCursor(long time, int id) {
+    public static PageCursor first() {
+        return new PageCursor(System.currentTimeMillis() + 86_400_000L, Integer.MAX_VALUE);
+    }
+
+    public static PageCursor of(Date date, int id) {
+        return new PageCursor(date.getTime(), id);
+    }
+
+    public static PageCursor require(String arg) {
+        String[] toks = arg.split(":", 2);
+        try {
+            if (toks.length != 2) throw new IllegalArgumentException(arg);
+            return new PageCursor(Long.parseLong(toks[0]), Integer.parseInt(toks[1]));
+        } catch (IllegalArgumentException iae) {
+            throw new CommandWarn("Invalid page: " + arg);
+        }
+    }
+
+    public Date date() {
+        return new Date(time);
+    }
+
+    @Override
+    public String toString() {
+        return time + ":" + id;
+    }
+}
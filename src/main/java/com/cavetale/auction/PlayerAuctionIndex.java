@@ -0,0 +1,103 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reverse index from each player to their rows in all auctions they
+ * have touched.  It holds the very same row instances as the players
+ * map of each registered Auction, so bids and listen types changed
+ * in place are reflected without further bookkeeping.
+ */
+public final class PlayerAuctionIndex {
+    private final Map<UUID, Map<Integer, SQLPlayerAuction>> index = new HashMap<>();
+
+    public void put(SQLPlayerAuction row) {
+        index.computeIfAbsent(row.getPlayer(), u -> new HashMap<>()).put(row.getAuctionId(), row);
+    }
+
+    public void remove(SQLPlayerAuction row) {
+        Map<Integer, SQLPlayerAuction> rows = index.get(row.getPlayer());
+        if (rows == null) return;
+        if (rows.get(row.getAuctionId()) != row) return;
+        rows.remove(row.getAuctionId());
+        if (rows.isEmpty()) index.remove(row.getPlayer());
+    }
+
+    public void removeAll(Collection<SQLPlayerAuction> rows) {
+        for (SQLPlayerAuction row : rows) remove(row);
+    }
+
+    /**
+     * Swap the rows of one auction after they were reloaded.  Old rows
+     * are matched by identity, so a row which was already replaced is
+     * left alone.
+     */
+    public void replaceAll(Collection<SQLPlayerAuction> oldRows, Collection<SQLPlayerAuction> newRows) {
+        removeAll(oldRows);
+        for (SQLPlayerAuction row : newRows) put(row);
+    }
+
+    /**
+     * Get all rows of one player, mapped by auction id.
+     */
+    public Map<Integer, SQLPlayerAuction> get(UUID uuid) {
+        return index.getOrDefault(uuid, Map.of());
+    }
+
+    public ListenType getListenType(UUID uuid, int auctionId) {
+        SQLPlayerAuction row = get(uuid).get(auctionId);
+        return row != null
+            ? row.getListenType()
+            : ListenType.DEFAULT;
+    }
+
+    /**
+     * Order auctions for one player: the focused ones first, then the
+     * others, each in the given order, without the ignored ones.
+     * @param idOf the auction id of each element
+     */
+    public <T> List<T> sortForPlayer(UUID uuid, List<T> auctions, ToIntFunction<T> idOf) {
+        final Map<Integer, SQLPlayerAuction> rows = get(uuid);
+        List<T> focused = new ArrayList<>();
+        List<T> others = new ArrayList<>();
+        for (T auction : auctions) {
+            SQLPlayerAuction row = rows.get(idOf.applyAsInt(auction));
+            ListenType listenType = row != null ? row.getListenType() : ListenType.DEFAULT;
+            if (listenType.isIgnore()) continue;
+            if (listenType.isFocus()) {
+                focused.add(auction);
+            } else {
+                others.add(auction);
+            }
+        }
+        focused.addAll(others);
+        return focused;
+    }
+
+    /**
+     * Collect the auctions one player focuses, in no particular
+     * order.
+     * @param lookup the auction of an id, or null to skip it
+     */
+    public <T> List<T> getFocused(UUID uuid, IntFunction<T> lookup) {
+        List<T> result = new ArrayList<>();
+        for (SQLPlayerAuction row : get(uuid).values()) {
+            if (!row.getListenType().isFocus()) continue;
+            T auction = lookup.apply(row.getAuctionId());
+            if (auction != null) result.add(auction);
+        }
+        return result;
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
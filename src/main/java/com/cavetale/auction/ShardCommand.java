@@ -0,0 +1,29 @@
+package com.cavetale.auction;
+
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A player command forwarded to the shard which owns the auction.
+ */
+@Data @NoArgsConstructor
+public final class ShardCommand {
+    private String server;
+    private Type type;
+    private UUID player;
+    private int auctionId;
+    private double amount;
+
+    public enum Type {
+        BID,
+        CANCEL;
+    }
+
+    public ShardCommand(final Type type, final UUID player, final int auctionId, final double amount) {
+        this.type = type;
+        this.player = player;
+        this.auctionId = auctionId;
+        this.amount = amount;
+    }
+}
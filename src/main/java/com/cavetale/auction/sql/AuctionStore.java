@@ -0,0 +1,135 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.auction.ListenType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The persistence operations of the auction manager.  Operations
+ * run one after another, in the order they were submitted, on
+ * virtual threads.  The returned futures complete on the callback
+ * executor given to the implementation, usually the main thread, so
+ * callers may chain them and touch the world in the continuation.
+ *
+ * Every write to the auction, player and delivery rows of ongoing
+ * auctions goes through here, so the ordering holds between bids,
+ * player commands and admin commands alike.  Lookups which only read,
+ * the creation of new auctions, logs, and the inventory blob cache
+ * still use the plugin database directly.
+ *
+ * A failed operation is logged by the store and completes its
+ * future exceptionally.
+ */
+public interface AuctionStore {
+    /**
+     * Get the ids of all active auctions.
+     */
+    CompletableFuture<List<Integer>> loadActiveIds();
+
+    /**
+     * Get all scheduled auctions, in no particular order.
+     */
+    CompletableFuture<List<SQLAuction>> loadScheduled();
+
+    /**
+     * Get one auction, or null if it does not exist.
+     */
+    CompletableFuture<SQLAuction> loadAuction(int id);
+
+    CompletableFuture<List<SQLPlayerAuction>> loadPlayers(int auctionId);
+
+    /**
+     * Write the changes of one or more bids: player rows first,
+     * inserting those without an id, then the given columns of the
+     * auction.  A row without an id whose player already has a row in
+     * the auction, inserted by an earlier batch, gets that id and is
+     * updated instead.  A player row which fails is logged and
+     * skipped.  The rows must not be changed until the future is
+     * done.
+     * @param auction the auction, or null if only players changed
+     * @return true unless the auction row was not found
+     */
+    CompletableFuture<Boolean> applyBid(SQLAuction auction, Set<String> columns,
+                                        Collection<SQLPlayerAuction> players, Set<String> playerColumns);
+
+    /**
+     * @return true unless the auction row was not found
+     */
+    CompletableFuture<Boolean> updateAuction(SQLAuction auction, Set<String> columns);
+
+    /**
+     * Store the final state of an ended auction and insert its
+     * deliveries.  The deliveries are inserted even if the auction
+     * row was not found, because money has already changed hands.
+     * @return true unless the auction row was not found
+     */
+    CompletableFuture<Boolean> settle(SQLAuction auction, Set<String> columns, List<SQLDelivery> deliveries);
+
+    CompletableFuture<Boolean> insertDelivery(SQLDelivery delivery);
+
+    /**
+     * Get any one delivery of a player, or null.
+     */
+    CompletableFuture<SQLDelivery> findDelivery(UUID owner);
+
+    /**
+     * @return false if the delivery was already gone
+     */
+    CompletableFuture<Boolean> deleteDelivery(SQLDelivery delivery);
+
+    /**
+     * Get the owners of all deliveries.
+     */
+    CompletableFuture<List<UUID>> loadDeliveryOwners();
+
+    CompletableFuture<Integer> countDeliveries(UUID owner);
+
+    /**
+     * @return the number of logs inserted
+     */
+    CompletableFuture<Integer> insertLogs(List<SQLLog> logs);
+
+    /**
+     * Set how a player listens to an auction, inserting their row if
+     * necessary.
+     * @return false if the auction does not exist
+     */
+    CompletableFuture<Boolean> setListenType(int auctionId, UUID player, ListenType listenType);
+
+    /**
+     * Cancel an auction unless it is past that, and send the item
+     * back to the owner unless it is a server auction.
+     * @return the auction as it was before, or null if it does not
+     *   exist.  It was cancelled if its state was cancellable.
+     */
+    CompletableFuture<SQLAuction> cancelAuction(int id);
+
+    /**
+     * Delete an auction with its players, logs and log summary, and
+     * its inventory blob unless another auction or delivery still
+     * references it.
+     * @return the number of auctions, logs and players deleted
+     */
+    CompletableFuture<int[]> deleteAuction(int id);
+
+    /**
+     * Do nothing, to measure how long operations wait in line.
+     * @return System.nanoTime() when the operation started
+     */
+    CompletableFuture<Long> probe();
+
+    /**
+     * Get the number of operations submitted so far.
+     */
+    long getOperationCount();
+
+    String debug();
+
+    /**
+     * Wait for all pending operations, then stop accepting new ones.
+     */
+    void close();
+}
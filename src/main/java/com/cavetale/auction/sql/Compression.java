@@ -0,0 +1,53 @@
+package com.cavetale.auction.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate helpers for stored inventories.
+ */
+final class Compression {
+    static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Inflate the given range.
+     * @param length the exact uncompressed length
+     */
+    static byte[] inflate(byte[] bytes, int offset, int count, int length) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes, offset, count);
+        byte[] result = new byte[length];
+        try {
+            int position = 0;
+            while (position < length && !inflater.finished()) {
+                int n = inflater.inflate(result, position, length - position);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                position += n;
+            }
+            if (position != length) {
+                throw new IllegalStateException("Truncated inventory data: " + position + "/" + length);
+            }
+        } catch (DataFormatException dfe) {
+            throw new IllegalStateException("Corrupt inventory data", dfe);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private Compression() { }
+}
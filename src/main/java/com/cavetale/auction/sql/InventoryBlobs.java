@@ -0,0 +1,125 @@
+package com.cavetale.auction.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.bukkit.Bukkit;
+import static com.cavetale.auction.AuctionPlugin.auctionDatabase;
+import static com.cavetale.auction.AuctionPlugin.auctionPlugin;
+
+/**
+ * Load inventory blobs into the InventoryCache.  Rows referencing a
+ * blob should be prepared before their inventory is parsed, so that
+ * the main thread never waits for the database.
+ *
+ * The prepared blobs are pinned while the callback runs.  Preparing
+ * more blobs than the cache holds would otherwise evict some of them
+ * before they are parsed.
+ */
+public final class InventoryBlobs {
+    private static final Map<String, Pin> PINNED = new HashMap<>();
+
+    private static final class Pin {
+        private final PackedInventory inventory;
+        private int count;
+
+        private Pin(final PackedInventory inventory) {
+            this.inventory = inventory;
+        }
+    }
+
+    /**
+     * Load all missing blobs, then call back on the main thread.
+     */
+    public static void prepare(Collection<String> hashes, Runnable callback) {
+        Map<String, PackedInventory> prepared = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String hash : hashes) {
+            if (hash == null || prepared.containsKey(hash)) continue;
+            PackedInventory cached = InventoryCache.get(hash);
+            if (cached != null) {
+                prepared.put(hash, cached);
+            } else {
+                missing.add(hash);
+            }
+        }
+        if (missing.isEmpty()) {
+            runPinned(prepared, callback);
+            return;
+        }
+        auctionDatabase().find(SQLInventoryBlob.class)
+            .in("hash", missing)
+            .findListAsync(blobs -> {
+                    for (SQLInventoryBlob blob : blobs) {
+                        prepared.put(blob.getHash(), cache(blob));
+                    }
+                    runPinned(prepared, callback);
+                });
+    }
+
+    private static void runPinned(Map<String, PackedInventory> prepared, Runnable callback) {
+        synchronized (PINNED) {
+            for (Map.Entry<String, PackedInventory> entry : prepared.entrySet()) {
+                PINNED.computeIfAbsent(entry.getKey(), h -> new Pin(entry.getValue())).count += 1;
+            }
+        }
+        try {
+            callback.run();
+        } finally {
+            synchronized (PINNED) {
+                for (String hash : prepared.keySet()) {
+                    Pin pin = PINNED.get(hash);
+                    pin.count -= 1;
+                    if (pin.count == 0) PINNED.remove(hash);
+                }
+            }
+        }
+    }
+
+    public static void prepare(String hash, Runnable callback) {
+        prepare(hash != null ? List.of(hash) : List.of(), callback);
+    }
+
+    public static void prepareAuctions(Collection<SQLAuction> rows, Runnable callback) {
+        List<String> hashes = new ArrayList<>(rows.size());
+        for (SQLAuction row : rows) hashes.add(row.getInventoryHash());
+        prepare(hashes, callback);
+    }
+
+    /**
+     * Get the inventory of a blob.  On the main thread it must have
+     * been prepared, as the main thread never waits for the database.
+     * Elsewhere a missing blob is loaded synchronously.
+     */
+    public static PackedInventory parse(String hash) {
+        synchronized (PINNED) {
+            Pin pin = PINNED.get(hash);
+            if (pin != null) return pin.inventory;
+        }
+        PackedInventory result = InventoryCache.get(hash);
+        if (result != null) return result;
+        if (Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Inventory blob not prepared: " + hash);
+        }
+        auctionPlugin().getLogger().warning("Loading inventory blob synchronously: " + hash);
+        SQLInventoryBlob blob = auctionDatabase().find(SQLInventoryBlob.class)
+            .eq("hash", hash)
+            .findUnique();
+        if (blob == null) {
+            throw new IllegalStateException("Inventory blob not found: " + hash);
+        }
+        return cache(blob);
+    }
+
+    private static PackedInventory cache(SQLInventoryBlob blob) {
+        PackedInventory inventory = blob.parsePacked();
+        InventoryCache.put(blob.getHash(), inventory, blob.getLength());
+        return inventory;
+    }
+
+    private InventoryBlobs() { }
+}
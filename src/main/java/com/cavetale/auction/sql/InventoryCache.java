@@ -0,0 +1,110 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.core.util.Json;
+import com.cavetale.inventory.storage.InventoryStorage;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.bukkit.inventory.Inventory;
+
+/**
+ * Bounded LRU cache of packed inventories, keyed by a hash of their
+ * serialized form, which for blobs is their content hash.  Cached
+ * instances are shared; their items are decoded on first use and
+ * handed out as copies.
+ */
+public final class InventoryCache {
+    private static final int MAX_ENTRIES = 256;
+    /**
+     * Upper bound for the summed length of all cached serialized
+     * inventories, which serves as a proxy for their decoded size.
+     */
+    private static final long MAX_WEIGHT = 16L * 1024L * 1024L;
+    private static final Map<String, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long weight;
+    private static long hits;
+    private static long misses;
+
+    private record Entry(PackedInventory inventory, int weight) { }
+
+    /**
+     * Parse a legacy inventory which is stored inline as json.
+     */
+    public static PackedInventory parse(String serialized) {
+        final String key = hash(serialized);
+        PackedInventory result = get(key);
+        if (result != null) return result;
+        Inventory inventory = Json.deserialize(serialized, InventoryStorage.class, InventoryStorage::new).toInventory();
+        result = PackedInventory.of(inventory);
+        put(key, result, serialized.length());
+        return result;
+    }
+
+    /**
+     * Get a cached inventory.
+     * @return the inventory or null if it is not cached
+     */
+    public static PackedInventory get(String key) {
+        Entry entry;
+        synchronized (CACHE) {
+            entry = CACHE.get(key);
+            if (entry != null) {
+                hits += 1;
+            } else {
+                misses += 1;
+            }
+        }
+        return entry != null ? entry.inventory() : null;
+    }
+
+    public static boolean contains(String key) {
+        synchronized (CACHE) {
+            return CACHE.containsKey(key);
+        }
+    }
+
+    /**
+     * Cache an inventory.
+     * @param weight the length of its serialized form
+     */
+    public static void put(String key, PackedInventory inventory, int weight) {
+        put(key, new Entry(inventory, weight));
+    }
+
+    private static void put(String key, Entry entry) {
+        synchronized (CACHE) {
+            Entry old = CACHE.put(key, entry);
+            if (old != null) weight -= old.weight();
+            weight += entry.weight();
+            Iterator<Entry> iter = CACHE.values().iterator();
+            while (iter.hasNext() && CACHE.size() > 1 && (CACHE.size() > MAX_ENTRIES || weight > MAX_WEIGHT)) {
+                weight -= iter.next().weight();
+                iter.remove();
+            }
+        }
+    }
+
+    public static String hash(String serialized) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(serialized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    public static String debug() {
+        synchronized (CACHE) {
+            return "entries=" + CACHE.size()
+                + " weight=" + weight
+                + " hits=" + hits
+                + " misses=" + misses;
+        }
+    }
+
+    private InventoryCache() { }
+}
@@ -0,0 +1,260 @@
+package com.cavetale.auction.sql;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import static com.cavetale.auction.AuctionPlugin.auctionDatabase;
+import static com.cavetale.auction.AuctionPlugin.auctionPlugin;
+
+/**
+ * Convert stored inventories to packed blobs in small batches:
+ * auction and delivery rows which still carry their inventory inline.
+ * Auctions without an item summary get one computed.  Rows are fetched and written
+ * asynchronously, items are converted on the main thread.
+ *
+ * Every packed form is decoded and compared before it is written.
+ * Rows keep their inline json next to the new blob, so the migration
+ * can be rolled back, until cleanup clears it.
+ */
+public final class InventoryMigration {
+    private static final int BATCH_SIZE = 50;
+    private final Consumer<String> feedback;
+    private final Runnable callback;
+    private int lastId;
+    private int auctions;
+    private int summaries;
+    private int deliveries;
+    private int cleared;
+    private int errors;
+
+    public InventoryMigration(final Consumer<String> feedback, final Runnable callback) {
+        this.feedback = feedback;
+        this.callback = callback;
+    }
+
+    public void start() {
+        lastId = 0;
+        nextAuctions();
+    }
+
+    /**
+     * Clear the inline json of migrated rows whose blob holds the same
+     * items.
+     */
+    public void cleanup() {
+        lastId = 0;
+        nextCleanupAuctions();
+    }
+
+    private void nextAuctions() {
+        auctionDatabase().find(SQLAuction.class)
+            .isNull("inventoryHash")
+            .gt("id", lastId)
+            .orderByAscending("id")
+            .limit(BATCH_SIZE)
+            .findListAsync(rows -> {
+                    if (rows.isEmpty()) {
+                        feedback.accept("Auctions migrated: " + auctions);
+                        lastId = 0;
+                        nextSummaries();
+                        return;
+                    }
+                    lastId = rows.get(rows.size() - 1).getId();
+                    List<SQLInventoryBlob> newBlobs = new ArrayList<>(rows.size());
+                    for (SQLAuction row : rows) {
+                        SQLInventoryBlob blob = toBlob(row.getId(), row.getInventory());
+                        if (blob == null) continue;
+                        row.setInventoryHash(blob.getHash());
+                        newBlobs.add(blob);
+                        auctions += 1;
+                    }
+                    writeAsync(() -> {
+                            for (SQLInventoryBlob blob : newBlobs) auctionDatabase().insertIgnore(blob);
+                            for (SQLAuction row : rows) {
+                                if (row.getInventoryHash() == null) continue;
+                                auctionDatabase().update(row, "inventoryHash");
+                            }
+                        }, this::nextAuctions);
+                });
+    }
+
+    /**
+     * Compute the item summary of auctions which predate it.
+     */
+    private void nextSummaries() {
+        auctionDatabase().find(SQLAuction.class)
+            .isNull("iconKey")
+            .gt("id", lastId)
+            .orderByAscending("id")
+            .limit(BATCH_SIZE)
+            .findListAsync(rows -> {
+                    if (rows.isEmpty()) {
+                        feedback.accept("Summaries computed: " + summaries);
+                        lastId = 0;
+                        nextDeliveries();
+                        return;
+                    }
+                    lastId = rows.get(rows.size() - 1).getId();
+                    InventoryBlobs.prepareAuctions(rows, () -> {
+                            for (SQLAuction row : rows) {
+                                try {
+                                    row.setSummary(InventorySummary.of(row.parsePacked()));
+                                } catch (RuntimeException re) {
+                                    auctionPlugin().getLogger().log(Level.SEVERE, "Summarize auction " + row.getId(), re);
+                                    errors += 1;
+                                    continue;
+                                }
+                                summaries += 1;
+                            }
+                            writeAsync(() -> {
+                                    for (SQLAuction row : rows) {
+                                        if (row.getIconKey() == null) continue;
+                                        auctionDatabase().update(row, "itemCount", "itemKinds", "topMaterial", "topAmount", "iconKey");
+                                    }
+                                }, this::nextSummaries);
+                        });
+                });
+    }
+
+    private void nextDeliveries() {
+        auctionDatabase().find(SQLDelivery.class)
+            .isNull("inventoryHash")
+            .gt("id", lastId)
+            .orderByAscending("id")
+            .limit(BATCH_SIZE)
+            .findListAsync(rows -> {
+                    if (rows.isEmpty()) {
+                        feedback.accept("Deliveries migrated: " + deliveries);
+                        if (errors > 0) feedback.accept("Errors: " + errors + ", see console");
+                        callback.run();
+                        return;
+                    }
+                    lastId = rows.get(rows.size() - 1).getId();
+                    List<SQLInventoryBlob> newBlobs = new ArrayList<>(rows.size());
+                    for (SQLDelivery row : rows) {
+                        SQLInventoryBlob blob = toBlob(row.getAuctionId(), row.getInventory());
+                        if (blob == null) continue;
+                        row.setInventoryHash(blob.getHash());
+                        newBlobs.add(blob);
+                        deliveries += 1;
+                    }
+                    writeAsync(() -> {
+                            for (SQLInventoryBlob blob : newBlobs) auctionDatabase().insertIgnore(blob);
+                            for (SQLDelivery row : rows) {
+                                if (row.getInventoryHash() == null) continue;
+                                auctionDatabase().update(row, "inventoryHash");
+                            }
+                        }, this::nextDeliveries);
+                });
+    }
+
+    /**
+     * Pack an inline inventory into a blob.
+     * @return the blob, or null if it failed or did not verify
+     */
+    private SQLInventoryBlob toBlob(int auctionId, String json) {
+        try {
+            PackedInventory packed = InventoryCache.parse(json);
+            SQLInventoryBlob blob = SQLInventoryBlob.of(packed);
+            if (!PackedInventory.verify(packed, Base64.getDecoder().decode(blob.getData()))) {
+                throw new IllegalStateException("Packed inventory differs");
+            }
+            return blob;
+        } catch (RuntimeException re) {
+            auctionPlugin().getLogger().log(Level.SEVERE, "Migrate inventory of auction " + auctionId, re);
+            errors += 1;
+            return null;
+        }
+    }
+
+    /**
+     * Both hash and inventory compare greater than the empty string
+     * only if they are set.
+     */
+    private void nextCleanupAuctions() {
+        auctionDatabase().find(SQLAuction.class)
+            .gt("inventoryHash", "")
+            .gt("inventory", "")
+            .gt("id", lastId)
+            .orderByAscending("id")
+            .limit(BATCH_SIZE)
+            .findListAsync(rows -> {
+                    if (rows.isEmpty()) {
+                        lastId = 0;
+                        nextCleanupDeliveries();
+                        return;
+                    }
+                    lastId = rows.get(rows.size() - 1).getId();
+                    InventoryBlobs.prepareAuctions(rows, () -> {
+                            List<SQLAuction> done = new ArrayList<>(rows.size());
+                            for (SQLAuction row : rows) {
+                                if (!matchesBlob(row.getId(), row.getInventoryHash(), row.getInventory())) continue;
+                                row.setInventory("");
+                                done.add(row);
+                            }
+                            writeAsync(() -> {
+                                    for (SQLAuction row : done) auctionDatabase().update(row, "inventory");
+                                }, this::nextCleanupAuctions);
+                        });
+                });
+    }
+
+    private void nextCleanupDeliveries() {
+        auctionDatabase().find(SQLDelivery.class)
+            .gt("inventoryHash", "")
+            .gt("inventory", "")
+            .gt("id", lastId)
+            .orderByAscending("id")
+            .limit(BATCH_SIZE)
+            .findListAsync(rows -> {
+                    if (rows.isEmpty()) {
+                        feedback.accept("Inline inventories cleared: " + cleared);
+                        if (errors > 0) feedback.accept("Errors: " + errors + ", see console");
+                        callback.run();
+                        return;
+                    }
+                    lastId = rows.get(rows.size() - 1).getId();
+                    List<String> hashes = new ArrayList<>(rows.size());
+                    for (SQLDelivery row : rows) hashes.add(row.getInventoryHash());
+                    InventoryBlobs.prepare(hashes, () -> {
+                            List<SQLDelivery> done = new ArrayList<>(rows.size());
+                            for (SQLDelivery row : rows) {
+                                if (!matchesBlob(row.getAuctionId(), row.getInventoryHash(), row.getInventory())) continue;
+                                row.setInventory("");
+                                done.add(row);
+                            }
+                            writeAsync(() -> {
+                                    for (SQLDelivery row : done) auctionDatabase().update(row, "inventory");
+                                }, this::nextCleanupDeliveries);
+                        });
+                });
+    }
+
+    private boolean matchesBlob(int auctionId, String hash, String json) {
+        try {
+            if (PackedInventory.sameItems(InventoryBlobs.parse(hash), InventoryCache.parse(json))) {
+                cleared += 1;
+                return true;
+            }
+            auctionPlugin().getLogger().severe("Blob differs from inline inventory of auction " + auctionId + ": " + hash);
+        } catch (RuntimeException re) {
+            auctionPlugin().getLogger().log(Level.SEVERE, "Compare inventory of auction " + auctionId, re);
+        }
+        errors += 1;
+        return false;
+    }
+
+    private void writeAsync(Runnable task, Runnable next) {
+        auctionDatabase().scheduleAsyncTask(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException re) {
+                    auctionPlugin().getLogger().log(Level.SEVERE, "Migrate inventories", re);
+                }
+                Bukkit.getScheduler().runTask(auctionPlugin(), next);
+            });
+    }
+}
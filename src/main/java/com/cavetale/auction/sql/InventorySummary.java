@@ -0,0 +1,68 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.core.item.ItemKinds;
+import com.cavetale.mytems.Mytems;
+import java.util.ArrayList;
+import java.util.List;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * What list views need to know about the items of an auction.  It
+ * is computed once when the auction is created and stored alongside
+ * it.
+ *
+ * @param itemCount the total item count, including the contents of
+ *   containers
+ * @param itemKinds the number of distinct kinds of items
+ * @param topMaterial the key of the material of the kind with the
+ *   highest amount
+ * @param topAmount the amount of that kind
+ * @param iconKey either "mytems:" followed by the Mytems id, the
+ *   material key of the only kind, or BUNDLE_ICON
+ */
+public record InventorySummary(int itemCount, int itemKinds, String topMaterial, int topAmount, String iconKey) {
+    public static final String BUNDLE_ICON = "bundle";
+    public static final String MYTEMS_PREFIX = "mytems:";
+
+    public static InventorySummary of(PackedInventory inventory) {
+        List<ItemStack> kinds = new ArrayList<>();
+        List<Integer> amounts = new ArrayList<>();
+        for (ItemStack item : inventory.getItems()) {
+            int index = -1;
+            for (int i = 0; i < kinds.size(); i += 1) {
+                if (ItemKinds.isSimilar(kinds.get(i), item)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                kinds.add(item);
+                amounts.add(item.getAmount());
+            } else {
+                amounts.set(index, amounts.get(index) + item.getAmount());
+            }
+        }
+        if (kinds.isEmpty()) {
+            return new InventorySummary(0, 0, "", 0, BUNDLE_ICON);
+        }
+        int top = 0;
+        for (int i = 1; i < kinds.size(); i += 1) {
+            if (amounts.get(i) > amounts.get(top)) top = i;
+        }
+        ItemStack topItem = kinds.get(top);
+        final String iconKey;
+        if (kinds.size() == 1) {
+            Mytems mytems = Mytems.forItem(topItem);
+            iconKey = mytems != null
+                ? MYTEMS_PREFIX + mytems.id
+                : topItem.getType().getKey().toString();
+        } else {
+            iconKey = BUNDLE_ICON;
+        }
+        return new InventorySummary(inventory.getTotalItems(),
+                                    kinds.size(),
+                                    topItem.getType().getKey().toString(),
+                                    amounts.get(top),
+                                    iconKey);
+    }
+}
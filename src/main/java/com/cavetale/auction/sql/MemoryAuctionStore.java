@@ -0,0 +1,285 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.auction.AuctionState;
+import com.cavetale.auction.ListenType;
+import com.cavetale.core.util.Json;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * An auction store which keeps everything in memory, for benchmarks,
+ * simulations and tests.  Like a database, it keeps copies of the
+ * rows it is given and hands out fresh copies on load, so callers
+ * never share an instance.  Updates store the whole row, not just
+ * the given columns.  Nothing is shared between servers.
+ *
+ * The maps are only touched by store operations, which never run
+ * concurrently.
+ */
+public final class MemoryAuctionStore implements AuctionStore {
+    private final StoreExecutor executor;
+    private final Map<Integer, SQLAuction> auctions = new LinkedHashMap<>();
+    private final Map<Integer, SQLPlayerAuction> players = new LinkedHashMap<>();
+    private final Map<Integer, SQLDelivery> deliveries = new LinkedHashMap<>();
+    private final List<SQLLog> logs = new ArrayList<>();
+    private int nextAuctionId = 1;
+    private int nextPlayerId = 1;
+    private int nextDeliveryId = 1;
+    private int nextLogId = 1;
+
+    public MemoryAuctionStore(final Logger logger, final Executor callbackExecutor) {
+        this.executor = new StoreExecutor(logger, callbackExecutor);
+    }
+
+    /**
+     * Insert an auction, assigning an id unless it has one.
+     */
+    public CompletableFuture<SQLAuction> addAuction(SQLAuction auction) {
+        return executor.submit("addAuction", () -> {
+                if (auction.getId() == null) {
+                    auction.setId(nextAuctionId++);
+                } else {
+                    nextAuctionId = Math.max(nextAuctionId, auction.getId() + 1);
+                }
+                auctions.put(auction.getId(), copy(auction, SQLAuction.class));
+                return auction;
+            });
+    }
+
+    /**
+     * Get the number of logs inserted so far.
+     */
+    public CompletableFuture<Integer> countLogs() {
+        return executor.submit("countLogs", logs::size);
+    }
+
+    /**
+     * Overwrite an existing auction.
+     * @return false if it does not exist
+     */
+    private boolean replace(SQLAuction auction) {
+        if (!auctions.containsKey(auction.getId())) return false;
+        auctions.put(auction.getId(), copy(auction, SQLAuction.class));
+        return true;
+    }
+
+    private Integer findPlayerId(SQLPlayerAuction row) {
+        for (SQLPlayerAuction old : players.values()) {
+            if (old.getAuctionId() == row.getAuctionId() && old.getPlayer().equals(row.getPlayer())) return old.getId();
+        }
+        return null;
+    }
+
+    private static <T> T copy(T row, Class<T> type) {
+        return Json.deserialize(Json.serialize(row), type, () -> {
+                throw new IllegalStateException("Copy failed: " + row);
+            });
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> loadActiveIds() {
+        return executor.submit("loadActiveIds", () -> {
+                List<Integer> result = new ArrayList<>();
+                for (SQLAuction auction : auctions.values()) {
+                    if (auction.getState() == AuctionState.ACTIVE) result.add(auction.getId());
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<List<SQLAuction>> loadScheduled() {
+        return executor.submit("loadScheduled", () -> {
+                List<SQLAuction> result = new ArrayList<>();
+                for (SQLAuction auction : auctions.values()) {
+                    if (auction.getState() == AuctionState.SCHEDULED) result.add(copy(auction, SQLAuction.class));
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<SQLAuction> loadAuction(int id) {
+        return executor.submit("loadAuction", () -> {
+                SQLAuction auction = auctions.get(id);
+                return auction != null ? copy(auction, SQLAuction.class) : null;
+            });
+    }
+
+    @Override
+    public CompletableFuture<List<SQLPlayerAuction>> loadPlayers(int auctionId) {
+        return executor.submit("loadPlayers", () -> {
+                List<SQLPlayerAuction> result = new ArrayList<>();
+                for (SQLPlayerAuction row : players.values()) {
+                    if (row.getAuctionId() == auctionId) result.add(copy(row, SQLPlayerAuction.class));
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> applyBid(SQLAuction auction, Set<String> columns,
+                                               Collection<SQLPlayerAuction> playerRows, Set<String> playerColumns) {
+        return executor.submit("applyBid", () -> {
+                for (SQLPlayerAuction row : playerRows) {
+                    if (row.getId() == null) row.setId(findPlayerId(row));
+                    if (row.getId() == null) row.setId(nextPlayerId++);
+                    players.put(row.getId(), copy(row, SQLPlayerAuction.class));
+                }
+                return auction == null || replace(auction);
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateAuction(SQLAuction auction, Set<String> columns) {
+        return executor.submit("updateAuction", () -> replace(auction));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> settle(SQLAuction auction, Set<String> columns, List<SQLDelivery> newDeliveries) {
+        return executor.submit("settle", () -> {
+                final boolean updated = replace(auction);
+                for (SQLDelivery delivery : newDeliveries) {
+                    delivery.setId(nextDeliveryId++);
+                    deliveries.put(delivery.getId(), copy(delivery, SQLDelivery.class));
+                }
+                return updated;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> insertDelivery(SQLDelivery delivery) {
+        return executor.submit("insertDelivery", () -> {
+                delivery.setId(nextDeliveryId++);
+                deliveries.put(delivery.getId(), copy(delivery, SQLDelivery.class));
+                return true;
+            });
+    }
+
+    @Override
+    public CompletableFuture<SQLDelivery> findDelivery(UUID owner) {
+        return executor.submit("findDelivery", () -> {
+                for (SQLDelivery delivery : deliveries.values()) {
+                    if (delivery.getOwner().equals(owner)) return copy(delivery, SQLDelivery.class);
+                }
+                return null;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteDelivery(SQLDelivery delivery) {
+        return executor.submit("deleteDelivery", () -> deliveries.remove(delivery.getId()) != null);
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> loadDeliveryOwners() {
+        return executor.submit("loadDeliveryOwners", () -> {
+                List<UUID> result = new ArrayList<>();
+                for (SQLDelivery delivery : deliveries.values()) {
+                    result.add(delivery.getOwner());
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Integer> countDeliveries(UUID owner) {
+        return executor.submit("countDeliveries", () -> {
+                int count = 0;
+                for (SQLDelivery delivery : deliveries.values()) {
+                    if (delivery.getOwner().equals(owner)) count += 1;
+                }
+                return count;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertLogs(List<SQLLog> newLogs) {
+        return executor.submit("insertLogs", () -> {
+                for (SQLLog log : newLogs) {
+                    log.setId(nextLogId++);
+                    logs.add(log);
+                }
+                return newLogs.size();
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setListenType(int auctionId, UUID player, ListenType listenType) {
+        return executor.submit("setListenType", () -> {
+                if (!auctions.containsKey(auctionId)) return false;
+                for (SQLPlayerAuction row : players.values()) {
+                    if (row.getAuctionId() == auctionId && row.getPlayer().equals(player)) {
+                        row.setListenType(listenType);
+                        return true;
+                    }
+                }
+                SQLPlayerAuction row = new SQLPlayerAuction(auctionId, player);
+                row.setId(nextPlayerId++);
+                row.setListenType(listenType);
+                players.put(row.getId(), row);
+                return true;
+            });
+    }
+
+    @Override
+    public CompletableFuture<SQLAuction> cancelAuction(int id) {
+        return executor.submit("cancelAuction", () -> {
+                SQLAuction auction = auctions.get(id);
+                if (auction == null) return null;
+                SQLAuction result = copy(auction, SQLAuction.class);
+                if (!auction.getState().isCancellable()) return result;
+                auction.setState(AuctionState.CANCELLED);
+                auction.setExclusive(false);
+                if (!auction.isServerAuction()) {
+                    SQLDelivery delivery = new SQLDelivery(auction, auction.getOwner(), 0.0);
+                    delivery.setId(nextDeliveryId++);
+                    deliveries.put(delivery.getId(), delivery);
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<int[]> deleteAuction(int id) {
+        return executor.submit("deleteAuction", () -> {
+                int[] result = new int[3];
+                if (auctions.remove(id) != null) result[0] = 1;
+                final int logCount = logs.size();
+                logs.removeIf(log -> log.getAuctionId() == id);
+                result[1] = logCount - logs.size();
+                final int playerCount = players.size();
+                players.values().removeIf(row -> row.getAuctionId() == id);
+                result[2] = playerCount - players.size();
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Long> probe() {
+        return executor.submit("probe", System::nanoTime);
+    }
+
+    @Override
+    public long getOperationCount() {
+        return executor.getSubmitted();
+    }
+
+    @Override
+    public String debug() {
+        return "memory " + executor.debug();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
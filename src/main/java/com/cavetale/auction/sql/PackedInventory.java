@@ -0,0 +1,273 @@
+package com.cavetale.auction.sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.block.Container;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+
+/**
+ * An inventory in the compact binary format.  Slots are kept as
+ * their serialized bytes and only decoded when first requested.  The
+ * header carries the summary most views need without decoding any
+ * item.
+ *
+ * Format version 1:
+ * - Header, uncompressed: magic, version, size, slotCount,
+ *   totalItems, topKind, bodyLength.
+ * - Body, deflated: for each non-empty slot its index, the length of
+ *   its bytes, and the bytes of ItemStack#serializeAsBytes.
+ *
+ * Instances are shared via the InventoryCache and must not be
+ * modified.  All item getters return copies.  Decoding is not
+ * synchronized, so use them on the main thread.
+ */
+public final class PackedInventory {
+    private static final byte MAGIC = (byte) 0xAC;
+    public static final byte VERSION = 1;
+    @Getter private final Header header;
+    private final byte[][] slots; // serialized, null if empty
+    private final ItemStack[] items; // decoded, null until requested
+
+    /**
+     * The cheap summary at the start of every encoded inventory.
+     * @param size the inventory size
+     * @param slotCount the number of non-empty slots
+     * @param totalItems the sum of all item amounts, including the
+     *   contents of containers
+     * @param topKind the key of the material with the highest amount,
+     *   or the empty string
+     */
+    public record Header(int size, int slotCount, int totalItems, String topKind) { }
+
+    /**
+     * The stored form.
+     * @param data header and deflated body
+     * @param hash content hash of the uncompressed form
+     * @param length length of the uncompressed form
+     */
+    public record Encoded(byte[] data, String hash, int length) { }
+
+    private PackedInventory(final Header header, final byte[][] slots, final ItemStack[] items) {
+        this.header = header;
+        this.slots = slots;
+        this.items = items;
+    }
+
+    /**
+     * Pack a live inventory.  The items are copied, so the inventory
+     * may be modified afterwards.
+     */
+    public static PackedInventory of(Inventory inventory) {
+        final int size = inventory.getSize();
+        ItemStack[] items = new ItemStack[size];
+        int slotCount = 0;
+        int totalItems = 0;
+        Map<String, Integer> kinds = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            ItemStack item = inventory.getItem(i);
+            if (item == null || item.getType().isAir()) continue;
+            items[i] = item.clone();
+            slotCount += 1;
+            totalItems += item.getAmount();
+            kinds.merge(item.getType().getKey().toString(), item.getAmount(), Integer::sum);
+            if (item.hasItemMeta()
+                && item.getItemMeta() instanceof BlockStateMeta meta
+                && meta.hasBlockState()
+                && meta.getBlockState() instanceof Container container) {
+                for (ItemStack item2 : container.getInventory()) {
+                    if (item2 == null || item2.getType().isAir()) continue;
+                    totalItems += item2.getAmount();
+                }
+            }
+        }
+        String topKind = "";
+        int topAmount = 0;
+        for (Map.Entry<String, Integer> entry : kinds.entrySet()) {
+            if (entry.getValue() > topAmount || (entry.getValue() == topAmount && entry.getKey().compareTo(topKind) < 0)) {
+                topKind = entry.getKey();
+                topAmount = entry.getValue();
+            }
+        }
+        return new PackedInventory(new Header(size, slotCount, totalItems, topKind), new byte[size][], items);
+    }
+
+    /**
+     * Read only the header of an encoded inventory.
+     */
+    public static Header readHeader(byte[] data) {
+        try {
+            return readHeader(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        if (in.readByte() != MAGIC) throw new IllegalStateException("Not a packed inventory");
+        byte version = in.readByte();
+        if (version != VERSION) throw new IllegalStateException("Unknown packed inventory version: " + version);
+        int size = in.readUnsignedShort();
+        int slotCount = in.readUnsignedShort();
+        int totalItems = in.readInt();
+        String topKind = in.readUTF();
+        return new Header(size, slotCount, totalItems, topKind);
+    }
+
+    /**
+     * Decode an inventory.  This inflates the body and splits it into
+     * slots, but does not deserialize any item.
+     */
+    public static PackedInventory decode(byte[] data) {
+        try {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytes);
+            Header header = readHeader(in);
+            int bodyLength = in.readInt();
+            int offset = data.length - bytes.available();
+            byte[] body = Compression.inflate(data, offset, data.length - offset, bodyLength);
+            DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+            byte[][] slots = new byte[header.size()][];
+            for (int i = 0; i < header.slotCount(); i += 1) {
+                int slot = bodyIn.readUnsignedShort();
+                byte[] slotBytes = new byte[bodyIn.readInt()];
+                bodyIn.readFully(slotBytes);
+                slots[slot] = slotBytes;
+            }
+            return new PackedInventory(header, slots, new ItemStack[header.size()]);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Check that encoded data decodes to the same items as the given
+     * inventory.  Every item is deserialized and compared slot by
+     * slot, and the header is computed anew.
+     */
+    public static boolean verify(PackedInventory original, byte[] data) {
+        try {
+            PackedInventory decoded = decode(data);
+            return sameItems(original, decoded)
+                && of(decoded.toInventory()).getHeader().equals(original.getHeader());
+        } catch (RuntimeException re) {
+            return false;
+        }
+    }
+
+    /**
+     * Compare two inventories slot by slot, including amounts and
+     * item meta.  This decodes every item of both.
+     */
+    public static boolean sameItems(PackedInventory a, PackedInventory b) {
+        if (a.getSize() != b.getSize()) return false;
+        for (int i = 0; i < a.getSize(); i += 1) {
+            if (!Objects.equals(a.getItem(i), b.getItem(i))) return false;
+        }
+        return true;
+    }
+
+    public Encoded encode() {
+        try {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            for (int i = 0; i < slots.length; i += 1) {
+                byte[] slotBytes = getSlotBytes(i);
+                if (slotBytes == null) continue;
+                body.writeShort(i);
+                body.writeInt(slotBytes.length);
+                body.write(slotBytes);
+            }
+            body.flush();
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(headerBytes);
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(header.size());
+            out.writeShort(header.slotCount());
+            out.writeInt(header.totalItems());
+            out.writeUTF(header.topKind());
+            out.writeInt(bodyBytes.size());
+            out.flush();
+            byte[] raw = bodyBytes.toByteArray();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(headerBytes.toByteArray());
+            digest.update(raw);
+            String hash = HexFormat.of().formatHex(digest.digest());
+            final int length = headerBytes.size() + raw.length;
+            headerBytes.write(Compression.deflate(raw));
+            return new Encoded(headerBytes.toByteArray(), hash, length);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private byte[] getSlotBytes(int slot) {
+        if (slots[slot] == null && items[slot] != null) {
+            slots[slot] = items[slot].serializeAsBytes();
+        }
+        return slots[slot];
+    }
+
+    public int getSize() {
+        return header.size();
+    }
+
+    public int getTotalItems() {
+        return header.totalItems();
+    }
+
+    public boolean isEmpty(int slot) {
+        return slots[slot] == null && items[slot] == null;
+    }
+
+    /**
+     * Get a copy of the item in a slot, decoding it if necessary.
+     * @return the item or null
+     */
+    public ItemStack getItem(int slot) {
+        if (items[slot] == null) {
+            if (slots[slot] == null) return null;
+            items[slot] = ItemStack.deserializeBytes(slots[slot]);
+        }
+        return items[slot].clone();
+    }
+
+    /**
+     * Get copies of all non-empty slots in order.
+     */
+    public List<ItemStack> getItems() {
+        List<ItemStack> result = new ArrayList<>(header.slotCount());
+        for (int i = 0; i < items.length; i += 1) {
+            if (isEmpty(i)) continue;
+            result.add(getItem(i));
+        }
+        return result;
+    }
+
+    public Inventory toInventory() {
+        Inventory result = Bukkit.createInventory(null, header.size());
+        for (int i = 0; i < items.length; i += 1) {
+            if (isEmpty(i)) continue;
+            result.setItem(i, getItem(i));
+        }
+        return result;
+    }
+}
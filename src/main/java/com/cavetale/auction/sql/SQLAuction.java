@@ -2,8 +2,6 @@ package com.cavetale.auction.sql;
 
 import com.cavetale.auction.AuctionState;
 import com.cavetale.core.playercache.PlayerCache;
-import com.cavetale.core.util.Json;
-import com.cavetale.inventory.storage.InventoryStorage;
 import com.winthier.sql.SQLRow;
 import com.winthier.sql.SQLRow.Id;
 import com.winthier.sql.SQLRow.Key;
@@ -21,6 +19,7 @@ import org.bukkit.inventory.Inventory;
 @Key({"owner", "createdTime"})
 @Key({"state", "endTime"})
 @Key({"exclusive", "owner"})
+@Key({"createdTime"})
 public final class SQLAuction implements SQLRow {
     public static final UUID SERVER_UUID = new UUID(0L, 0L);
     @Id private Integer id;
@@ -36,22 +35,56 @@ public final class SQLAuction implements SQLRow {
     private double currentPrice; // shown
     private double highestBid; // secret
     private double auctionFee;
+    /**
+     * Legacy inline inventory json.  Empty if inventoryHash is set.
+     */
     @SQLRow.LongText private String inventory;
+    /**
+     * Content hash of the SQLInventoryBlob.
+     */
+    @Nullable private String inventoryHash;
     private Date createdTime;
     private long fullDuration;
     private Date startTime;
     private Date endTime;
     private Date announcedTime;
+    /**
+     * Bumped by the manager with every state change it replicates to
+     * the other servers.
+     */
+    @Default("0") private long version;
+    /**
+     * Item summary, see InventorySummary.  The iconKey is null until
+     * the summary was computed.
+     */
+    @Default("0") private int itemCount;
+    @Default("0") private int itemKinds;
+    @Nullable private String topMaterial;
+    @Default("0") private int topAmount;
+    @Nullable private String iconKey;
 
     public SQLAuction() { }
 
     public SQLAuction(final UUID owner, final double startingBid, final Inventory inventory, final Duration duration) {
+        this(owner, startingBid, PackedInventory.of(inventory), duration);
+    }
+
+    private SQLAuction(final UUID owner, final double startingBid, final PackedInventory packed, final Duration duration) {
+        this(owner, startingBid, SQLInventoryBlob.of(packed), InventorySummary.of(packed), duration);
+    }
+
+    /**
+     * Create a new auction.  The caller must store the blob.
+     */
+    public SQLAuction(final UUID owner, final double startingBid, final SQLInventoryBlob blob, final InventorySummary summary, final Duration duration) {
         this.owner = owner;
         this.state = AuctionState.SCHEDULED;
         this.currentBid = 0.0;
         this.currentPrice = startingBid;
         this.highestBid = 0.0;
-        this.inventory = Json.serialize(InventoryStorage.of(inventory));
+        this.inventory = "";
+        this.inventoryHash = blob.getHash();
+        setSummary(summary);
         this.createdTime = new Date();
         this.fullDuration = duration.toSeconds();
         // These will change later!
@@ -64,8 +97,26 @@ public final class SQLAuction implements SQLRow {
         return Duration.between(Instant.now(), endTime.toInstant());
     }
 
+    /**
+     * Parse the inventory.  Rows with a hash should be prepared via
+     * InventoryBlobs first.
+     */
+    public PackedInventory parsePacked() {
+        return inventoryHash != null
+            ? InventoryBlobs.parse(inventoryHash)
+            : InventoryCache.parse(inventory);
+    }
+
+    public void setSummary(InventorySummary summary) {
+        this.itemCount = summary.itemCount();
+        this.itemKinds = summary.itemKinds();
+        this.topMaterial = summary.topMaterial();
+        this.topAmount = summary.topAmount();
+        this.iconKey = summary.iconKey();
+    }
+
     public Inventory parseInventory() {
-        return Json.deserialize(inventory, InventoryStorage.class, InventoryStorage::new).toInventory();
+        return parsePacked().toInventory();
     }
 
     public boolean isOwner(UUID uuid) {
@@ -0,0 +1,216 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.auction.AuctionState;
+import com.cavetale.auction.ListenType;
+import com.winthier.sql.SQLDatabase;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The auction store backed by the plugin database.  Operations use
+ * the blocking database calls on the store's own virtual threads.
+ */
+public final class SQLAuctionStore implements AuctionStore {
+    private final SQLDatabase database;
+    private final Logger logger;
+    private final StoreExecutor executor;
+
+    public SQLAuctionStore(final SQLDatabase database, final Logger logger, final Executor callbackExecutor) {
+        this.database = database;
+        this.logger = logger;
+        this.executor = new StoreExecutor(logger, callbackExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> loadActiveIds() {
+        return executor.submit("loadActiveIds", () -> database.find(SQLAuction.class)
+                               .eq("state", AuctionState.ACTIVE)
+                               .findValues("id", Integer.class));
+    }
+
+    @Override
+    public CompletableFuture<List<SQLAuction>> loadScheduled() {
+        return executor.submit("loadScheduled", () -> database.find(SQLAuction.class)
+                               .eq("state", AuctionState.SCHEDULED)
+                               .findList());
+    }
+
+    @Override
+    public CompletableFuture<SQLAuction> loadAuction(int id) {
+        return executor.submit("loadAuction", () -> database.find(SQLAuction.class)
+                               .idEq(id)
+                               .findUnique());
+    }
+
+    @Override
+    public CompletableFuture<List<SQLPlayerAuction>> loadPlayers(int auctionId) {
+        return executor.submit("loadPlayers", () -> database.find(SQLPlayerAuction.class)
+                               .eq("auctionId", auctionId)
+                               .findList());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> applyBid(SQLAuction auction, Set<String> columns,
+                                               Collection<SQLPlayerAuction> players, Set<String> playerColumns) {
+        return executor.submit("applyBid", () -> {
+                // A failed player row, such as a duplicate key, must
+                // not keep the auction row from being written.
+                for (SQLPlayerAuction row : players) {
+                    try {
+                        if (row.getId() == null) {
+                            SQLPlayerAuction old = database.find(SQLPlayerAuction.class)
+                                .eq("auctionId", row.getAuctionId())
+                                .eq("player", row.getPlayer())
+                                .findUnique();
+                            if (old != null) row.setId(old.getId());
+                        }
+                        if (row.getId() == null) {
+                            database.insert(row);
+                        } else {
+                            database.update(row, playerColumns.toArray(new String[0]));
+                        }
+                    } catch (Exception e) {
+                        logger.log(Level.SEVERE, "[store] applyBid: " + row, e);
+                    }
+                }
+                if (auction == null || columns.isEmpty()) return true;
+                return database.update(auction, columns.toArray(new String[0])) != 0;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateAuction(SQLAuction auction, Set<String> columns) {
+        return executor.submit("updateAuction", () -> database.update(auction, columns.toArray(new String[0])) != 0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> settle(SQLAuction auction, Set<String> columns, List<SQLDelivery> deliveries) {
+        return executor.submit("settle", () -> {
+                final boolean updated = database.update(auction, columns.toArray(new String[0])) != 0;
+                for (SQLDelivery delivery : deliveries) {
+                    database.insert(delivery);
+                }
+                return updated;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> insertDelivery(SQLDelivery delivery) {
+        return executor.submit("insertDelivery", () -> database.insert(delivery) != 0);
+    }
+
+    @Override
+    public CompletableFuture<SQLDelivery> findDelivery(UUID owner) {
+        return executor.submit("findDelivery", () -> database.find(SQLDelivery.class)
+                               .eq("owner", owner)
+                               .findUnique());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteDelivery(SQLDelivery delivery) {
+        return executor.submit("deleteDelivery", () -> database.delete(delivery) != 0);
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> loadDeliveryOwners() {
+        return executor.submit("loadDeliveryOwners", () -> database.find(SQLDelivery.class)
+                               .findValues("owner", UUID.class));
+    }
+
+    @Override
+    public CompletableFuture<Integer> countDeliveries(UUID owner) {
+        return executor.submit("countDeliveries", () -> database.find(SQLDelivery.class)
+                               .eq("owner", owner)
+                               .findRowCount());
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertLogs(List<SQLLog> logs) {
+        return executor.submit("insertLogs", () -> database.insert(logs));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setListenType(int auctionId, UUID player, ListenType listenType) {
+        return executor.submit("setListenType", () -> {
+                if (database.find(SQLAuction.class).idEq(auctionId).findRowCount() == 0) return false;
+                SQLPlayerAuction row = database.find(SQLPlayerAuction.class)
+                    .eq("auctionId", auctionId)
+                    .eq("player", player)
+                    .findUnique();
+                if (row == null) {
+                    row = new SQLPlayerAuction(auctionId, player);
+                    row.setListenType(listenType);
+                    database.insert(row);
+                } else if (row.getListenType() != listenType) {
+                    row.setListenType(listenType);
+                    database.update(row, "listenType");
+                }
+                return true;
+            });
+    }
+
+    @Override
+    public CompletableFuture<SQLAuction> cancelAuction(int id) {
+        return executor.submit("cancelAuction", () -> {
+                SQLAuction auction = database.find(SQLAuction.class).idEq(id).findUnique();
+                if (auction == null || !auction.getState().isCancellable()) return auction;
+                final AuctionState state = auction.getState();
+                final boolean exclusive = auction.isExclusive();
+                auction.setState(AuctionState.CANCELLED);
+                auction.setExclusive(false);
+                database.update(auction, "state", "exclusive");
+                if (!auction.isServerAuction()) {
+                    database.insert(new SQLDelivery(auction, auction.getOwner(), 0.0));
+                }
+                // Hand back the state before, like the memory store.
+                auction.setState(state);
+                auction.setExclusive(exclusive);
+                return auction;
+            });
+    }
+
+    @Override
+    public CompletableFuture<int[]> deleteAuction(int id) {
+        return executor.submit("deleteAuction", () -> {
+                int[] result = new int[3];
+                SQLAuction auction = database.find(SQLAuction.class).idEq(id).findUnique();
+                result[0] = database.find(SQLAuction.class).idEq(id).delete();
+                result[1] = database.find(SQLLog.class).eq("auctionId", id).delete();
+                database.find(SQLLogSummary.class).eq("auctionId", id).delete();
+                result[2] = database.find(SQLPlayerAuction.class).eq("auctionId", id).delete();
+                final String hash = auction != null ? auction.getInventoryHash() : null;
+                if (hash != null
+                    && database.find(SQLAuction.class).eq("inventoryHash", hash).findRowCount() == 0
+                    && database.find(SQLDelivery.class).eq("inventoryHash", hash).findRowCount() == 0) {
+                    database.find(SQLInventoryBlob.class).eq("hash", hash).delete();
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Long> probe() {
+        return executor.submit("probe", System::nanoTime);
+    }
+
+    @Override
+    public long getOperationCount() {
+        return executor.getSubmitted();
+    }
+
+    @Override
+    public String debug() {
+        return "sql " + executor.debug();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
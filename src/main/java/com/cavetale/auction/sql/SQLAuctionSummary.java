@@ -0,0 +1,58 @@
+package com.cavetale.auction.sql;
+
+import com.cavetale.auction.AuctionState;
+import com.cavetale.core.playercache.PlayerCache;
+import com.winthier.sql.SQLRow;
+import com.winthier.sql.SQLRow.Id;
+import com.winthier.sql.SQLRow.Name;
+import com.winthier.sql.SQLRow.NotNull;
+import com.winthier.sql.SQLRow.Nullable;
+import java.util.Date;
+import java.util.UUID;
+import lombok.Data;
+
+/**
+ * Read-only projection of the auctions table for list views.  It
+ * selects the summary columns but neither inventory nor bid secrets.
+ * Must be registered after SQLAuction, which owns the table.
+ */
+@Data @NotNull @Name("auctions")
+public final class SQLAuctionSummary implements SQLRow {
+    @Id private Integer id;
+    private UUID owner;
+    @Nullable private UUID winner;
+    private AuctionState state;
+    private double currentPrice;
+    private Date createdTime;
+    private long fullDuration;
+    private Date startTime;
+    private Date endTime;
+    @Default("0") private int itemCount;
+    @Default("0") private int itemKinds;
+    @Nullable private String topMaterial;
+    @Default("0") private int topAmount;
+    @Nullable private String iconKey;
+
+    public SQLAuctionSummary() { }
+
+    public boolean hasSummary() {
+        return iconKey != null;
+    }
+
+    public boolean hasWinner() {
+        return winner != null;
+    }
+
+    public String getOwnerName() {
+        if (owner == null) return "N/A";
+        return SQLAuction.SERVER_UUID.equals(owner)
+            ? "The Server"
+            : PlayerCache.nameForUuid(owner);
+    }
+
+    public String getWinnerName() {
+        return winner != null
+            ? PlayerCache.nameForUuid(winner)
+            : "N/A";
+    }
+}
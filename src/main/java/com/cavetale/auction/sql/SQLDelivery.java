@@ -1,8 +1,6 @@
 package com.cavetale.auction.sql;
 
 import com.cavetale.core.playercache.PlayerCache;
-import com.cavetale.core.util.Json;
-import com.cavetale.inventory.storage.InventoryStorage;
 import com.winthier.sql.SQLRow;
 import com.winthier.sql.SQLRow.Name;
 import com.winthier.sql.SQLRow.NotNull;
@@ -17,7 +15,8 @@ public final class SQLDelivery implements SQLRow {
     @Id private Integer id;
     private int auctionId;
     @Keyed private UUID owner;
-    @LongText private String inventory;
+    @LongText private String inventory; // legacy
+    @Nullable private String inventoryHash;
     private double debt;
     private UUID moneyRecipient;
     private Date creationTime;
@@ -28,6 +27,7 @@ public final class SQLDelivery implements SQLRow {
         this.auctionId = auction.getId();
         this.owner = owner;
         this.inventory = auction.getInventory();
+        this.inventoryHash = auction.getInventoryHash();
         this.debt = debt;
         this.moneyRecipient = auction.getOwner();
         this.creationTime = new Date();
@@ -37,8 +37,18 @@ public final class SQLDelivery implements SQLRow {
         return owner.equals(moneyRecipient);
     }
 
+    /**
+     * Parse the inventory.  Rows with a hash should be prepared via
+     * InventoryBlobs first.
+     */
+    public PackedInventory parsePacked() {
+        return inventoryHash != null
+            ? InventoryBlobs.parse(inventoryHash)
+            : InventoryCache.parse(inventory);
+    }
+
     public Inventory parseInventory() {
-        return Json.deserialize(inventory, InventoryStorage.class, InventoryStorage::new).toInventory();
+        return parsePacked().toInventory();
     }
 
     public boolean hasDebt() {
@@ -0,0 +1,74 @@
+package com.cavetale.auction.sql;
+
+import com.winthier.sql.SQLRow;
+import com.winthier.sql.SQLRow.Id;
+import com.winthier.sql.SQLRow.Name;
+import com.winthier.sql.SQLRow.NotNull;
+import com.winthier.sql.SQLRow.UniqueKey;
+import java.util.Base64;
+import java.util.Date;
+import lombok.Data;
+import org.bukkit.inventory.Inventory;
+
+/**
+ * Content addressed storage of serialized inventories.  Auctions and
+ * deliveries reference their items by hash, so identical payloads
+ * are stored only once.
+ */
+@Data @NotNull @Name("inventory_blobs")
+@UniqueKey({"hash"})
+public final class SQLInventoryBlob implements SQLRow {
+    /**
+     * PackedInventory, the only format so far.
+     */
+    public static final int FORMAT_PACKED = 1;
+    @Id private Integer id;
+    private String hash;
+    private int format;
+    private int length; // uncompressed
+    @LongText private String data; // base64
+    private Date createdTime;
+
+    public SQLInventoryBlob() { }
+
+    /**
+     * Serialize an inventory into a new blob.  The packed inventory
+     * is also put in the cache, so the creating server will not have
+     * to load it back.
+     */
+    public static SQLInventoryBlob of(Inventory inventory) {
+        return of(PackedInventory.of(inventory));
+    }
+
+    public static SQLInventoryBlob of(PackedInventory packed) {
+        PackedInventory.Encoded encoded = packed.encode();
+        SQLInventoryBlob result = new SQLInventoryBlob();
+        result.hash = encoded.hash();
+        result.setPacked(encoded);
+        result.createdTime = new Date();
+        InventoryCache.put(result.hash, packed, encoded.length());
+        return result;
+    }
+
+    private void setPacked(PackedInventory.Encoded encoded) {
+        this.format = FORMAT_PACKED;
+        this.length = encoded.length();
+        this.data = Base64.getEncoder().encodeToString(encoded.data());
+    }
+
+    public PackedInventory parsePacked() {
+        checkFormat();
+        return PackedInventory.decode(Base64.getDecoder().decode(data));
+    }
+
+    public PackedInventory.Header parseHeader() {
+        checkFormat();
+        return PackedInventory.readHeader(Base64.getDecoder().decode(data));
+    }
+
+    private void checkFormat() {
+        if (format != FORMAT_PACKED) {
+            throw new IllegalStateException("Unknown inventory blob format: " + format);
+        }
+    }
+}
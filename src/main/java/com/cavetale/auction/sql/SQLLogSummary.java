@@ -0,0 +1,36 @@
+package com.cavetale.auction.sql;
+
+import com.winthier.sql.SQLRow;
+import com.winthier.sql.SQLRow.Id;
+import com.winthier.sql.SQLRow.Key;
+import com.winthier.sql.SQLRow.Name;
+import com.winthier.sql.SQLRow.NotNull;
+import com.winthier.sql.SQLRow.Nullable;
+import com.winthier.sql.SQLRow.UniqueKey;
+import java.util.Date;
+import java.util.UUID;
+import lombok.Data;
+
+/**
+ * Rollup of the logs of one finished auction.  The raw rows were
+ * moved to the archive file named here.
+ */
+@Data @NotNull @Name("log_summaries")
+@UniqueKey({"auctionId"})
+@Key({"auctionEndTime"})
+public final class SQLLogSummary implements SQLRow {
+    @Id private Integer id;
+    private int auctionId;
+    private Date auctionEndTime;
+    private int logCount;
+    private int bidCount;
+    private int bidders;
+    private double finalPrice;
+    @Nullable private UUID winner;
+    @Nullable private Date firstTime;
+    @Nullable private Date lastTime;
+    private String archive;
+    private Date createdTime;
+
+    public SQLLogSummary() { }
+}
@@ -0,0 +1,93 @@
+package com.cavetale.auction.sql;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Run store operations one after another, each on a fresh virtual
+ * thread, so a blocking query never holds a platform thread.  Each
+ * operation starts once the previous one has finished, so a load
+ * submitted after a write sees it.  This ordering only covers the
+ * operations of one store, not the plugin database thread, which
+ * still runs beside it.
+ */
+final class StoreExecutor {
+    private static final long CLOSE_TIMEOUT_SECONDS = 10L;
+    private final Logger logger;
+    private final Executor callbackExecutor;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("auction-store-", 0L).factory());
+    private CompletableFuture<?> last = CompletableFuture.completedFuture(null);
+    private long submitted;
+    private long failed;
+    private long totalNanos;
+    private long maxNanos;
+
+    StoreExecutor(final Logger logger, final Executor callbackExecutor) {
+        this.logger = logger;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Submit an operation.  The returned future completes on the
+     * callback executor.
+     * @param name the operation, for error reports
+     */
+    synchronized <T> CompletableFuture<T> submit(String name, Callable<T> task) {
+        submitted += 1;
+        CompletableFuture<T> result = last
+            .handle((r, e) -> null)
+            .thenApplyAsync(v -> call(name, task), executor);
+        last = result;
+        return result.whenCompleteAsync((r, e) -> { }, callbackExecutor);
+    }
+
+    private <T> T call(String name, Callable<T> task) {
+        final long start = System.nanoTime();
+        try {
+            return task.call();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "[store] " + name, e);
+            synchronized (this) {
+                failed += 1;
+            }
+            throw new CompletionException(e);
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            synchronized (this) {
+                totalNanos += nanos;
+                maxNanos = Math.max(maxNanos, nanos);
+            }
+        }
+    }
+
+    synchronized long getSubmitted() {
+        return submitted;
+    }
+
+    void close() {
+        final CompletableFuture<?> pending;
+        synchronized (this) {
+            pending = last;
+        }
+        try {
+            pending.handle((r, e) -> null).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "[store] Pending operations did not finish", e);
+        }
+        executor.shutdown();
+    }
+
+    synchronized String debug() {
+        return "ops=" + submitted
+            + " failed=" + failed
+            + " avgMs=" + (submitted > 0 ? String.format("%.3f", (double) totalNanos / (double) submitted / 1e6) : "0")
+            + " maxMs=" + String.format("%.3f", (double) maxNanos / 1e6);
+    }
+}
@@ -0,0 +1,72 @@
+package com.cavetale.auction;
+
+import com.cavetale.auction.sql.SQLPlayerAuction;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The index must follow the players of an auction through reloads,
+ * which replace every row instance.
+ */
+public final class PlayerAuctionIndexTest {
+    private static final UUID ALICE = new UUID(0L, 1L);
+    private static final UUID BOB = new UUID(0L, 2L);
+
+    private static SQLPlayerAuction row(int auctionId, UUID player, ListenType listenType) {
+        SQLPlayerAuction row = new SQLPlayerAuction(auctionId, player);
+        row.setListenType(listenType);
+        return row;
+    }
+
+    @Test
+    public void reloadReplacesRows() {
+        PlayerAuctionIndex index = new PlayerAuctionIndex();
+        List<SQLPlayerAuction> oldRows = List.of(row(1, ALICE, ListenType.DEFAULT),
+                                                 row(1, BOB, ListenType.FOCUS));
+        index.replaceAll(List.of(), oldRows);
+        // Alice focused, Bob left, on another server
+        List<SQLPlayerAuction> newRows = List.of(row(1, ALICE, ListenType.FOCUS));
+        index.replaceAll(oldRows, newRows);
+        assertSame(newRows.get(0), index.get(ALICE).get(1));
+        assertEquals(ListenType.FOCUS, index.getListenType(ALICE, 1));
+        assertTrue(index.get(BOB).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void reloadKeepsOtherAuctions() {
+        PlayerAuctionIndex index = new PlayerAuctionIndex();
+        SQLPlayerAuction other = row(2, ALICE, ListenType.IGNORE);
+        index.put(other);
+        List<SQLPlayerAuction> oldRows = List.of(row(1, ALICE, ListenType.DEFAULT));
+        index.replaceAll(List.of(), oldRows);
+        List<SQLPlayerAuction> newRows = List.of(row(1, ALICE, ListenType.FOCUS));
+        index.replaceAll(oldRows, newRows);
+        Map<Integer, SQLPlayerAuction> rows = index.get(ALICE);
+        assertEquals(2, rows.size());
+        assertSame(other, rows.get(2));
+        assertSame(newRows.get(0), rows.get(1));
+    }
+
+    @Test
+    public void staleRowsAreNotRemoved() {
+        PlayerAuctionIndex index = new PlayerAuctionIndex();
+        SQLPlayerAuction stale = row(1, ALICE, ListenType.DEFAULT);
+        SQLPlayerAuction current = row(1, ALICE, ListenType.FOCUS);
+        index.put(current);
+        index.remove(stale);
+        assertSame(current, index.get(ALICE).get(1));
+    }
+
+    @Test
+    public void sortForPlayerPutsFocusFirst() {
+        PlayerAuctionIndex index = new PlayerAuctionIndex();
+        index.put(row(2, ALICE, ListenType.IGNORE));
+        index.put(row(3, ALICE, ListenType.FOCUS));
+        assertEquals(List.of(3, 1, 4), index.sortForPlayer(ALICE, List.of(1, 2, 3, 4), Integer::intValue));
+        assertEquals(List.of(3), index.getFocused(ALICE, id -> id));
+    }
+}